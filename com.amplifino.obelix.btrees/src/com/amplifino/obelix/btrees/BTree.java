@@ -1,7 +1,14 @@
 package com.amplifino.obelix.btrees;
 
+import java.nio.BufferUnderflowException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 
 import com.amplifino.counters.Accumulators;
@@ -20,8 +27,19 @@ import com.amplifino.obelix.sets.SortedInfiniteMap;
  */
 public final class BTree<K,V> implements SortedInfiniteMap<K,V> {
 	
+	/**
+	 * Block overhead to create the BlockSpace of a new BTree with, 
+	 * leaving room for the right sibling links that range scans follow from leaf to leaf.
+	 * Blocks of such a BTree also store the prefix shared by their entries only once,
+	 * which lowers the maximum serialized entry length by two bytes.
+	 * BTrees on a BlockSpace with less overhead find the next leaf through the parent branches,
+	 * and store entries uncompressed.
+	 */
+	public static final int BLOCKOVERHEAD = BlockHeader.BYTES;
+	
 	private final RootNode<K,V> root;
 	private final Comparator<? super K> comparator;
+	private final Injection<K, byte[]> keyInjection;
 	private final ConcurrentBlockSpace space;
 	private final Injection<OrderedPair<K, V>, byte[]> leafInjection;
 	private final Injection<LongValuePair<K>, byte[]> branchInjection;
@@ -30,6 +48,7 @@ public final class BTree<K,V> implements SortedInfiniteMap<K,V> {
 	private BTree(BlockSpace space, Comparator<? super K> comparator, Injection<K, byte[]> keyInjection, Injection<OrderedPair<K,V>, byte []> pairInjection) {
 		this.space = ConcurrentBlockSpace.on(space);
 		this.comparator = comparator;
+		this.keyInjection = keyInjection;
 		leafInjection = pairInjection;
 		branchInjection = LongValuePairInjection.of(keyInjection);
 		this.root = new RootNode<>(this);
@@ -49,6 +68,40 @@ public final class BTree<K,V> implements SortedInfiniteMap<K,V> {
 		root.put(key, value);
 		return this;
 	}
+	
+	/**
+	 * Puts a batch of pairs. 
+	 * 
+	 * <p> The batch is sorted on key, and pairs that land in the same leaf are put under a single latch,
+	 * descending the tree once per leaf instead of once per pair.
+	 * If the batch contains equal keys, the last one wins.</p>
+	 * 
+	 * @param pairs the pairs to put
+	 * @return this
+	 */
+	public BTree<K,V> putAll(Collection<? extends OrderedPair<K,V>> pairs) {
+		List<OrderedPair<K,V>> sorted = new ArrayList<>(pairs);
+		sorted.sort(Comparator.comparing(OrderedPair::key, comparator));
+		root.putAll(sorted);
+		return this;
+	}
+	
+	/**
+	 * Gets the values for a batch of keys, 
+	 * reading all keys that land in the same leaf in a single leaf access.
+	 * 
+	 * @param keys the keys to look up
+	 * @return the keys found with their values, sorted on key
+	 */
+	public SortedMap<K,V> getAll(Collection<? extends K> keys) {
+		List<K> sorted = new ArrayList<>(keys);
+		sorted.sort(comparator);
+		List<OrderedPair<K,V>> found = new ArrayList<>();
+		root.getAll(sorted, found);
+		SortedMap<K,V> result = new TreeMap<>(comparator);
+		found.forEach(pair -> result.put(pair.key(), pair.value()));
+		return result;
+	}
 
 	@Override
 	public BTree<K,V> remove(K key) {
@@ -56,6 +109,24 @@ public final class BTree<K,V> implements SortedInfiniteMap<K,V> {
 		return this;
 	}
 	
+	/**
+	 * Loads an empty BTree from entries sorted in strictly ascending key order.
+	 * 
+	 * <p> Leaves are filled up to the fill factor, leaving room for later inserts without splits.
+	 * The entries are loaded in parallel if the stream is parallel, 
+	 * but the stream must be ordered and the tree must not be updated during the load.</p>
+	 * 
+	 * @param sorted entries in ascending key order
+	 * @param fillFactor fraction of the block capacity to fill, greater than 0 and at most 1
+	 * @return this
+	 * @throws IllegalStateException if the tree is not empty
+	 * @throws IllegalArgumentException if the keys are not in strictly ascending order
+	 */
+	public BTree<K,V> bulkLoad(Stream<OrderedPair<K,V>> sorted, double fillFactor) {
+		root.bulkLoad(sorted, fillFactor);
+		return this;
+	}
+	
 	@Override
 	public Stream<OrderedPair<K,V>> graph() {
 		return graph(Optional.empty(), Optional.empty());
@@ -84,6 +155,35 @@ public final class BTree<K,V> implements SortedInfiniteMap<K,V> {
 		return comparator.compare(key1, key2);
 	}
 	
+	/**
+	 * returns a key greater than left and not greater than right, 
+	 * serialized as the shortest prefix of the serialized right key that differs from the serialized left key.
+	 * Branches store these separators instead of the first key of a new leaf,
+	 * so long keys sharing a prefix take less room in branch blocks.
+	 * If the prefix does not serialize back to itself, as for fixed width keys or a truncated character, 
+	 * or is out of order, the separator is right.
+	 */
+	K separator(K left, K right) {
+		byte[] bytes = keyInjection.map(right);
+		int length = PrefixBlock.commonPrefix(keyInjection.map(left), bytes) + 1;
+		if (length >= bytes.length) {
+			return right;
+		}
+		byte[] prefix = Arrays.copyOf(bytes, length);
+		K candidate;
+		try {
+			candidate = keyInjection.unmap(prefix);
+		} catch (BufferUnderflowException e) {
+			// prefix is too short for a fixed width key
+			return right;
+		}
+		if (Arrays.equals(keyInjection.map(candidate), prefix) && comparator.compare(left, candidate) < 0 && comparator.compare(candidate, right) <= 0) {
+			return candidate;
+		} else {
+			return right;
+		}
+	}
+	
 	Injection<OrderedPair<K, V>, byte[]> leafInjection() {
 		return leafInjection;
 	}
@@ -14,6 +14,7 @@ public enum BTreeCounters {
 	FREES,
 	RESTARTS,	
 	MAXRESTARTS,
-	FAILEDRESTARTS;
+	FAILEDRESTARTS,
+	LINKS;
 	
 }
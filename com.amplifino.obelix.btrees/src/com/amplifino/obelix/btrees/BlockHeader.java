@@ -0,0 +1,64 @@
+package com.amplifino.obelix.btrees;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.amplifino.obelix.space.ByteSpace;
+
+/**
+ * 
+ * Right sibling link of a leaf, kept in the block overhead
+ * 
+ * Layout
+ * 
+ * 0..7   nonce of this leaf
+ * 8..15  tag of the right sibling, 0 if none
+ * 16..23 nonce of the right sibling
+ * 
+ * <p> A leaf gets a random nonce when created. Freeing a block clears the nonce,
+ * so a link to a leaf that was removed, or to a block that was reused since, no longer matches the nonce of its target.</p>
+ * 
+ * <p> Unlike a Lehman-Yao B-link tree, leaves keep no high key and branches no links.
+ * Only range scans follow links. A point read that meets a concurrent split can not move right,
+ * it restarts from the parent when it fails to validate the invalidated latch of the split leaf.</p>
+ * 
+ */
+class BlockHeader {
+	
+	static final int BYTES = 3 * Long.BYTES;
+	private static final long NONCEOFFSET = 0;
+	private static final long NEXTOFFSET = NONCEOFFSET + Long.BYTES;
+	private static final long NEXTNONCEOFFSET = NEXTOFFSET + Long.BYTES;
+	
+	private final ByteSpace space;
+	
+	BlockHeader(ByteSpace space) {
+		this.space = space;
+	}
+	
+	void initialize() {
+		long nonce = 0;
+		while (nonce == 0) {
+			nonce = ThreadLocalRandom.current().nextLong();
+		}
+		space.putLong(NONCEOFFSET, nonce);
+		next(0, 0);
+	}
+	
+	long nonce() {
+		return space.getLong(NONCEOFFSET);
+	}
+	
+	long next() {
+		return space.getLong(NEXTOFFSET);
+	}
+	
+	long nextNonce() {
+		return space.getLong(NEXTNONCEOFFSET);
+	}
+	
+	void next(long tag, long nonce) {
+		space.putLong(NEXTNONCEOFFSET, nonce);
+		space.putLong(NEXTOFFSET, tag);
+	}
+
+}
@@ -1,29 +1,49 @@
 package com.amplifino.obelix.btrees;
 
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 import com.amplifino.obelix.stores.Block;
 
+/**
+ * Latch on a btree block
+ * 
+ * <p> Writers take an exclusive, reentrant latch. 
+ * Readers do not lock, but read the block optimistically and validate the block version afterwards,
+ * restarting with a SplitException when a writer intervened.
+ * The version is kept in a StampedLock that is only write locked by the thread owning the latch.
+ * Readers that find the latch taken wait on the read lock instead of spinning.</p>
+ * 
+ */
 class BlockLock {
 	
 	private final Block<byte[]> block;
+	private final Optional<BlockHeader> header;
 	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+	private final StampedLock version = new StampedLock();
+	private long writeStamp;
 	private AtomicBoolean valid = new AtomicBoolean(true);
 	
-	private BlockLock(Block<byte[]> block) {
+	private BlockLock(Block<byte[]> block, Optional<BlockHeader> header) {
 		this.block = block;
+		this.header = header;
 	}
 	
-	static <T> BlockLock on(Block<byte[]> block) {
-		return new BlockLock(block);
+	static <T> BlockLock on(Block<byte[]> block, Optional<BlockHeader> header) {
+		return new BlockLock(block, header);
 	}
 	
 	Block<byte[]> block() {
 		return block;
 	}
 	
+	Optional<BlockHeader> header() {
+		return header;
+	}
+	
 	Lock readLock() throws SplitException {
 		Lock readLock = lock.readLock();
 		readLock.lock();
@@ -35,17 +55,49 @@ class BlockLock {
 		}
 	}
 	
-	Lock writeLock() throws SplitException {
+	/**
+	 * returns a stamp to validate an optimistic read with, 
+	 * or zero if a writer holds the latch
+	 */
+	long optimisticRead() throws SplitException {
+		long stamp = version.tryOptimisticRead();
+		if (valid.get()) {
+			return stamp;
+		} else {
+			throw new SplitException();
+		}
+	}
+	
+	void validate(long stamp) throws SplitException {
+		if (!version.validate(stamp) || !valid.get()) {
+			throw new SplitException();
+		}
+	}
+	
+	void writeLock() throws SplitException {
 		Lock writeLock = lock.writeLock();
 		writeLock.lock();
 		if (valid.get()) {
-			return writeLock;
+			if (lock.getWriteHoldCount() == 1) {
+				writeStamp = version.writeLock();
+			}
 		} else {
 			writeLock.unlock();
 			throw new SplitException();
 		}
 	}
 	
+	void writeUnlock() {
+		if (lock.getWriteHoldCount() == 1) {
+			version.unlockWrite(writeStamp);
+		}
+		lock.writeLock().unlock();
+	}
+	
+	boolean isWriteLockedByCurrentThread() {
+		return lock.isWriteLockedByCurrentThread();
+	}
+	
 	boolean isValid() {
 		return valid.get();
 	}
@@ -1,14 +1,12 @@
 package com.amplifino.obelix.btrees;
 
-import java.util.stream.Stream;
-
 import com.amplifino.counters.Accumulators;
 import com.amplifino.obelix.pairs.LongValuePair;
 import com.amplifino.obelix.pairs.OrderedPair;
 
 interface Branch<K,V> extends Node<K, V> {
 
-	Stream<OrderedPair<K,V>> next(RealNode<K,V> child) throws SplitException;
+	LeafRun<K,V> next(RealNode<K,V> child) throws SplitException;
 	void split(SplitAction<K,V> splitAction) throws SplitException;
 	void remove(RealNode<K,V> child) throws SplitException;
 	long allocateLeaf();
@@ -19,4 +17,5 @@ interface Branch<K,V> extends Node<K, V> {
 	void free(long tag);
 	void refresh(long tag);
 	Accumulators<BTreeCounters> counters();
+	K separator(K left, K right);
 }
@@ -1,7 +1,9 @@
 package com.amplifino.obelix.btrees;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.OptionalLong;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -32,16 +34,15 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 		}
 	}
 	
-	BranchNode(Branch<K,V> parent, long tag, long firstTag ,  RealNode<K,V> second) {
+	BranchNode(Branch<K,V> parent, long tag, long firstTag ,  RealNode<K,V> second, K secondKey) {
 		this(parent, tag);
 		RealNode<K,V> first = parent().node(this, firstTag);
 		second.parent(this);
 		try {
 			K firstFirstKey = first.firstKey();
-			K secondFirstKey = second.firstKey();
 			lock.put(block -> {
 				doAdd(block, LongValuePair.of(firstFirstKey, first.tag()));
-				doAdd(block, LongValuePair.of(secondFirstKey, second.tag()));
+				doAdd(block, LongValuePair.of(secondKey, second.tag()));
 			});
 		} catch (SplitException e) {
 			throw new IllegalStateException(e);
@@ -73,6 +74,16 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 		return lock.get(block -> block.get(0).key());
 	}
 	
+	@Override
+	public K separator(int split) throws SplitException {
+		return lock.get(block -> block.get(split).key());
+	}
+	
+	@Override
+	public K separator(K left, K right) {
+		return parent().separator(left, right);
+	}
+	
 	@Override
 	public void free(long tag) {
 		parent().free(tag);
@@ -83,13 +94,32 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 		return splitState.retryGet(() -> node(key).get(key));		
 	}
 	
+	@Override
+	public int getAll(List<K> keys, List<OrderedPair<K, V>> found) throws SplitException {
+		int done = 0;
+		try {
+			while (done < keys.size()) {
+				List<K> rest = keys.subList(done, keys.size());
+				done += splitState.retryGet(() -> {
+					Route<K,V> route = route(rest, Function.identity());
+					return route.node.getAll(rest.subList(0, route.size), found);
+				});
+			}
+		} catch (SplitException e) {
+			if (done == 0) {
+				throw e;
+			}
+		}
+		return done;
+	}
+	
 	@Override
 	public ConcurrentBlock<OrderedPair<K, V>> leafBlock(long tag) {
 		return parent().leafBlock(tag);
 	}
 	
 	@Override
-	public Stream<OrderedPair<K,V>> next(Optional<K> key) throws SplitException {
+	public LeafRun<K,V> next(Optional<K> key) throws SplitException {
 		return splitState.retryGet(() -> node(key.get()).next(key));
 	}
 	
@@ -104,7 +134,7 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 	}
 	
 	@Override
-	public Stream<OrderedPair<K,V>> next(RealNode<K,V> child) throws SplitException {
+	public LeafRun<K,V> next(RealNode<K,V> child) throws SplitException {
 		OptionalLong tag = lock.get(block -> next(block, child));
 		if (tag.isPresent()) {
 			return parent().node(this, tag.getAsLong()).start(Optional.empty());
@@ -113,6 +143,10 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 		}
 	}
 	
+	@Override
+	public void link(RealNode<K,V> sibling) {
+	}
+	
 	@Override
 	public RealNode<K, V> node(Branch<K,V> parent, long tag) {
 		return parent().node(parent, tag);
@@ -122,6 +156,25 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 	public void put(K key, V value) throws SplitException {
 		splitState.retryPut(() -> node(key).put(key, value));
 	}
+	
+	@Override
+	public int putAll(List<OrderedPair<K, V>> pairs) throws SplitException {
+		int done = 0;
+		try {
+			while (done < pairs.size()) {
+				List<OrderedPair<K,V>> rest = pairs.subList(done, pairs.size());
+				done += splitState.retryGet(() -> {
+					Route<K,V> route = route(rest, OrderedPair::key);
+					return route.node.putAll(rest.subList(0, route.size));
+				});
+			}
+		} catch (SplitException e) {
+			if (done == 0) {
+				throw e;
+			}
+		}
+		return done;
+	}
 
 	@Override
 	public void refresh(long tag) {
@@ -153,7 +206,7 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 	}
 	
 	@Override 
-	public Stream<OrderedPair<K,V>> start(Optional<K> key) throws SplitException {
+	public LeafRun<K,V> start(Optional<K> key) throws SplitException {
 		return splitState.retryGet(() -> node(key).start(key));
 	}
 
@@ -201,11 +254,34 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 		if (key.isPresent()) {
 			return node(key.get());
 		} else {
-			return lock.get(block -> parent().node(this, block.get(0).value()));
+			return lock.get(block -> get(block, 0), tag -> parent().node(this, tag));
 		}
 	}
+	
 	private Node<K,V> node(K key) throws SplitException {
-		return lock.get(block -> node(block, key));
+		return lock.get(block -> tag(block, key), tag -> parent().node(this, tag));
+	}
+	
+	/**
+	 * returns the child for the first element, and the number of leading elements that belong to the same child
+	 */
+	private <E> Route<K,V> route(List<E> elements, Function<E, K> keyFunction) throws SplitException {
+		return lock.get(
+			block -> route(block, elements, keyFunction), 
+			route -> new Route<>(parent().node(this, route.value()), route.key()));
+	}
+	
+	private <E> LongValuePair<Integer> route(Block<LongValuePair<K>> block, List<E> elements, Function<E, K> keyFunction) {
+		int index = index(block, keyFunction.apply(elements.get(0)));
+		int size = elements.size();
+		if (index + 1 < block.size()) {
+			K next = block.get(index + 1).key();
+			size = 1;
+			while (size < elements.size() && parent().compare(keyFunction.apply(elements.get(size)), next) < 0) {
+				size++;
+			}
+		}
+		return LongValuePair.of(size, get(block, index));
 	}
 	
 	private Node<K,V> node(Block<LongValuePair<K>> block,K key)  {
@@ -301,4 +377,14 @@ class BranchNode<K,V> extends AbstractNode<K,V> implements Branch<K,V> {
 			return Optional.empty();
 		}
 	}
+	
+	private static final class Route<K,V> {
+		private final Node<K,V> node;
+		private final int size;
+		
+		Route(Node<K,V> node, int size) {
+			this.node = node;
+			this.size = size;
+		}
+	}
 }
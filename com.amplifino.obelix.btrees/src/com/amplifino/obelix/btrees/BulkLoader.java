@@ -0,0 +1,183 @@
+package com.amplifino.obelix.btrees;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+import com.amplifino.obelix.pairs.LongValuePair;
+import com.amplifino.obelix.pairs.OrderedPair;
+import com.amplifino.obelix.stores.Block;
+
+/**
+ * Bottom up construction of a BTree from sorted entries
+ * 
+ * <p> Leaves are packed in key order up to the fill factor, 
+ * then branch levels are packed on top of the leaves one level at a time, until a single root remains.</p>
+ * 
+ * <p> A parallel stream is loaded by packing the leaves of each partition independently.
+ * Partitions are concatenated in encounter order, linking the last leaf of a partition to the first leaf of the next.</p> 
+ * 
+ */
+class BulkLoader<K,V> {
+	
+	private final BTree<K,V> bTree;
+	private final Branch<K,V> root;
+	private final long budget;
+	
+	BulkLoader(BTree<K,V> bTree, Branch<K,V> root, double fillFactor) {
+		if (!(fillFactor > 0 && fillFactor <= 1)) {
+			throw new IllegalArgumentException("Invalid fill factor: " + fillFactor);
+		}
+		this.bTree = bTree;
+		this.root = root;
+		this.budget = (long) (bTree.space().blockCapacity() * fillFactor);
+	}
+	
+	/**
+	 * loads the entries in new blocks, and returns the tag of the new root, or empty if there were no entries
+	 */
+	OptionalLong load(Stream<OrderedPair<K,V>> sorted) {
+		Partition partition = sorted.collect(Collector.of(Partition::new, Partition::add, Partition::append));
+		root.counters().accumulate(BTreeCounters.INSERTS, partition.count);
+		List<LongValuePair<K>> level = partition.leaves;
+		if (level.isEmpty()) {
+			return OptionalLong.empty();
+		}
+		root.counters().increment(BTreeCounters.LEVELINCREASES);
+		while (level.size() > 1) {
+			level = branches(level);
+			root.counters().increment(BTreeCounters.LEVELINCREASES);
+		}
+		return OptionalLong.of(level.get(0).value());
+	}
+	
+	private List<LongValuePair<K>> branches(List<LongValuePair<K>> children) {
+		List<LongValuePair<K>> branches = new ArrayList<>();
+		Block<byte[]> block = null;
+		Fill fill = null;
+		for (LongValuePair<K> child : children) {
+			byte[] bytes = bTree.branchInjection().map(child);
+			if (block == null || !fits(block, fill, bytes, 2)) {
+				long tag = root.allocateBranch();
+				block = bTree.space().get(tag >>> 1).block();
+				branches.add(LongValuePair.of(child.key(), tag));
+				fill = new Fill();
+			}
+			add(block, bytes);
+			fill.add(bytes);
+		}
+		return branches;
+	}
+	
+	/**
+	 * tests if an entry fits in a block within the fill factor. 
+	 * Blocks with less than minimum entries take entries as long as there is room 
+	 */
+	private boolean fits(Block<byte[]> block, Fill fill, byte[] bytes, int minimum) {
+		if (!block.canTake(bytes)) {
+			return false;
+		}
+		return block.size() < minimum || fill.used(bytes) <= budget;
+	}
+	
+	private void add(Block<byte[]> block, byte[] bytes) {
+		if (!block.add(bytes)) {
+			throw new IllegalStateException();
+		}
+	}
+	
+	private void link(BlockLock from, long tag, BlockLock to) {
+		from.header().ifPresent(header -> header.next(tag, to.header().get().nonce()));
+	}
+	
+	private class Partition {
+		
+		private final List<LongValuePair<K>> leaves = new ArrayList<>();
+		private Optional<K> lastKey = Optional.empty();
+		private BlockLock leaf;
+		private Fill fill;
+		private long count;
+		
+		void add(OrderedPair<K,V> pair) {
+			lastKey.ifPresent(key -> checkOrder(key, pair.key()));
+			byte[] bytes = bTree.leafInjection().map(pair);
+			if (leaf == null || !fits(leaf.block(), fill, bytes, 1)) {
+				newLeaf(pair.key());
+			}
+			BulkLoader.this.add(leaf.block(), bytes);
+			fill.add(bytes);
+			lastKey = Optional.of(pair.key());
+			count++;
+		}
+		
+		Partition append(Partition other) {
+			if (other.leaves.isEmpty()) {
+				return this;
+			}
+			if (leaves.isEmpty()) {
+				return other;
+			}
+			LongValuePair<K> first = other.leaves.get(0);
+			checkOrder(lastKey.get(), first.key());
+			link(leaf, first.value(), bTree.space().get(first.value() >>> 1));
+			leaves.addAll(other.leaves);
+			leaf = other.leaf;
+			fill = other.fill;
+			lastKey = other.lastKey;
+			count += other.count;
+			return this;
+		}
+		
+		private void newLeaf(K firstKey) {
+			long tag = root.allocateLeaf();
+			BlockLock newLeaf = bTree.space().get(tag >>> 1);
+			newLeaf.header().ifPresent(BlockHeader::initialize);
+			if (leaf != null) {
+				link(leaf, tag, newLeaf);
+			}
+			leaves.add(LongValuePair.of(firstKey, tag));
+			leaf = newLeaf;
+			fill = new Fill();
+		}
+		
+		private void checkOrder(K previous, K next) {
+			if (root.compare(previous, next) >= 0) {
+				throw new IllegalArgumentException("Keys not in strictly ascending order: " + previous + " , " + next);
+			}
+		}
+	}
+	
+	/**
+	 * tracks the bytes used in a block being packed, 
+	 * taking prefix compression into account if the blocks are compressed
+	 */
+	private class Fill {
+		
+		private final boolean compressed = bTree.space().isLinked();
+		private byte[] prefix;
+		private long length;
+		private int count;
+		
+		long used(byte[] bytes) {
+			long entries = count + 1;
+			long total = Integer.BYTES + length + bytes.length + entries * Integer.BYTES;
+			if (compressed) {
+				int prefixLength = count == 0 ? bytes.length : PrefixBlock.commonPrefix(prefix, bytes);
+				total += prefixLength + Integer.BYTES - entries * prefixLength;
+			}
+			return total;
+		}
+		
+		void add(byte[] bytes) {
+			if (compressed) {
+				prefix = count == 0 ? bytes : Arrays.copyOf(prefix, PrefixBlock.commonPrefix(prefix, bytes));
+			}
+			length += bytes.length;
+			count++;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.amplifino.obelix.btrees;
 
+import java.util.Optional;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 
@@ -7,6 +8,13 @@ import com.amplifino.obelix.sets.Injection;
 import com.amplifino.obelix.stores.Block;
 import com.amplifino.obelix.stores.ObjectBlock;
 
+/**
+ * Typed access to a latched btree block
+ * 
+ * <p> Reads run optimistically without locking, and throw a SplitException when the block changed during the read.
+ * Read functions may therefore see inconsistent block content, and must not have side effects beyond counting.</p>
+ * 
+ */
 class ConcurrentBlock<T> {
 
 	private final Block<T> block;
@@ -22,6 +30,37 @@ class ConcurrentBlock<T> {
 	}
 		
  	<R> R get(Function<Block<T>, R> function) throws SplitException {
+		return get(function, Function.identity());
+	}
+	
+	/**
+	 * reads the block, and maps the validated result while the block remains unchanged.
+	 * Unlike the read function, the mapper only sees consistent values, 
+	 * so it may act on them, e.g. to look up the child node for a tag 
+	 */
+	<R,S> S get(Function<Block<T>, R> function, Function<R, S> mapper) throws SplitException {
+		if (lock.isWriteLockedByCurrentThread()) {
+			return mapper.apply(function.apply(block));
+		}
+		long stamp = lock.optimisticRead();
+		if (stamp == 0) {
+			return lockedGet(function.andThen(mapper));
+		}
+		R result;
+		try {
+			result = function.apply(block);
+		} catch (RuntimeException e) {
+			// torn reads may fail in arbitrary ways, only report failures on a stable block
+			lock.validate(stamp);
+			throw e;
+		}
+		lock.validate(stamp);
+		S mapped = mapper.apply(result);
+		lock.validate(stamp);
+		return mapped;
+	}
+	
+	private <R> R lockedGet(Function<Block<T>, R> function) throws SplitException {
  		Lock readLock = lock.readLock();
 		try {
 			return function.apply(block);
@@ -31,13 +70,23 @@ class ConcurrentBlock<T> {
 	}
 	
 	ConcurrentBlock<T> put(SplitConsumer<T> consumer) throws SplitException {
-		Lock writeLock = lock.writeLock();
-		try {
+		return update(block -> {
 			consumer.accept(block);
+			return this;
+		});
+	}
+	
+	<R> R update(SplitFunction<T, R> function) throws SplitException {
+		lock.writeLock();
+		try {
+			return function.apply(block);
 		} finally {
-			writeLock.unlock();
+			lock.writeUnlock();
 		}		
-		return this;
+	}
+	
+	Optional<BlockHeader> header() {
+		return lock.header();
 	}
 	
 	void invalidate() {
@@ -57,4 +106,9 @@ class ConcurrentBlock<T> {
 		void accept(Block<T> block) throws SplitException;
 	}
  
+	@FunctionalInterface
+	interface SplitFunction<T, R> {
+		R apply(Block<T> block) throws SplitException;
+	}
+
 }
@@ -1,9 +1,11 @@
 package com.amplifino.obelix.btrees;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.amplifino.obelix.segments.BlockSpace;
+import com.amplifino.obelix.stores.Block;
 
 class ConcurrentBlockSpace  {
 
@@ -23,18 +25,45 @@ class ConcurrentBlockSpace  {
 	}
 	
 	private BlockLock fetch(long blockNumber) {
-		return BlockLock.on(space.get(blockNumber));
+		Block<byte[]> block = space.get(blockNumber);
+		return BlockLock.on(isLinked() ? PrefixBlock.on(block, blockCapacity()) : block, header(blockNumber));
+	}
+	
+	private Optional<BlockHeader> header(long blockNumber) {
+		return isLinked() ? Optional.of(new BlockHeader(space.overhead(blockNumber))) : Optional.empty();
+	}
+	
+	/**
+	 * tests if blocks have room for sibling links.
+	 * Blocks of such spaces are also prefix compressed
+	 */
+	boolean isLinked() {
+		return space.overhead() >= BlockHeader.BYTES;
 	}
 		
+	/**
+	 * frees the block. The block is cleared before its latch leaves the cache, 
+	 * so a scan following a stale link either finds the invalidated latch, 
+	 * or waits for the clear to complete and finds no matching nonce
+	 */
 	void remove(long blockNumber) {
-		cache.remove(blockNumber);
-		space.remove(blockNumber);
+		cache.compute(blockNumber, (key, lock) -> {
+			space.remove(key);
+			return null;
+		});
 	}
 	
 	void refresh(long blockNumber) {
 		cache.remove(blockNumber);
 	}
 	
+	/**
+	 * returns the number of bytes available for entries in a block
+	 */
+	long blockCapacity() {
+		return space.blockSize() - space.overhead();
+	}
+	
 	long getUserHeader() {
 		return space.getUserHeader();
 	}
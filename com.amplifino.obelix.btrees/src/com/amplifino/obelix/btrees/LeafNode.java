@@ -1,5 +1,7 @@
 package com.amplifino.obelix.btrees;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -37,6 +39,20 @@ class LeafNode<K, V> extends AbstractNode<K, V> implements Leaf<K, V> {
 	public K firstKey() throws SplitException {
 		return lock.get(block -> block.first().get().key());
 	}
+	
+	/**
+	 * returns the shortest key separating the entries before split from the entries at and after split,
+	 * or the first key if no entries stay
+	 */
+	@Override
+	public K separator(int split) throws SplitException {
+		K right = lock.get(block -> block.get(split).key());
+		if (split == 0) {
+			return right;
+		}
+		K left = lock.get(block -> block.get(split - 1).key());
+		return parent().separator(left, right);
+	}
 
 	@Override
 	public Optional<V> get(K key) throws SplitException {
@@ -44,19 +60,47 @@ class LeafNode<K, V> extends AbstractNode<K, V> implements Leaf<K, V> {
 	}
 
 	@Override
-	public Stream<OrderedPair<K, V>> next(Optional<K> key) throws SplitException {
-		Optional<Stream<OrderedPair<K, V>>> result = lock.get(block -> next(block,key));
-		if (result.isPresent()) {
-			return result.get();
-		} else {
+	public int getAll(List<K> keys, List<OrderedPair<K, V>> found) throws SplitException {
+		found.addAll(lock.get(block -> getAll(block, keys)));
+		return keys.size();
+	}
+	
+	@Override
+	public LeafRun<K, V> next(Optional<K> key) throws SplitException {
+		LeafRun<K, V> result = lock.get(block -> next(block,key));
+		if (result.isEmpty()) {
 			return parent().next(this);
+		} else {
+			return result;
 		}
 	}
+	
+	/**
+	 * reads the entries after key if this leaf still has the given nonce, 
+	 * as a scan arriving through the right sibling link of the previous leaf
+	 */
+	Optional<LeafRun<K, V>> follow(long nonce, Optional<K> key) throws SplitException {
+		return lock.get(block -> follow(block, nonce, key));
+	}
+	
+	@Override
+	public void link(RealNode<K, V> sibling) {
+		lock.header().ifPresent(header -> {
+			BlockHeader siblingHeader = ((LeafNode<K, V>) sibling).lock.header().get();
+			siblingHeader.next(header.next(), header.nextNonce());
+			header.next(sibling.tag(), siblingHeader.nonce());
+		});
+	}
 
 	@Override
 	public void put(K key, V value) throws SplitException {
 		lock.put(block -> put(block, OrderedPair.of(key,value)));
 	}
+	
+	@Override
+	public int putAll(List<OrderedPair<K, V>> pairs) throws SplitException {
+		return lock.update(block -> putAll(block, pairs));
+	}
 
 	@Override
 	public void remove(K key) throws SplitException {
@@ -70,12 +114,12 @@ class LeafNode<K, V> extends AbstractNode<K, V> implements Leaf<K, V> {
 	}
 	
 	@Override
-	public Stream<OrderedPair<K, V>> start(Optional<K> key) throws SplitException {
-		Optional<Stream<OrderedPair<K,V>>>  result = lock.get(block -> start(block, key));
-		if (result.isPresent()) {
-			return result.get();
-		} else {
+	public LeafRun<K, V> start(Optional<K> key) throws SplitException {
+		LeafRun<K,V> result = lock.get(block -> start(block, key));
+		if (result.isEmpty()) {
 			return parent().next(this);
+		} else {
+			return result;
 		}
 	}
 
@@ -123,6 +167,7 @@ class LeafNode<K, V> extends AbstractNode<K, V> implements Leaf<K, V> {
 	}
 
 	private final void init(Block<OrderedPair<K,V>> block, Stream<OrderedPair<K,V>> stream) {
+		lock.header().ifPresent(BlockHeader::initialize);
 		stream.forEach( pair -> {
 			if (!block.add(pair)) {
 				throw new IllegalArgumentException("Initial entry list to large");
@@ -130,23 +175,69 @@ class LeafNode<K, V> extends AbstractNode<K, V> implements Leaf<K, V> {
 		});
 	}
 
-	private Optional<Stream<OrderedPair<K, V>>> next(Block<OrderedPair<K, V>> block,  Optional<K> key) {
+	private LeafRun<K, V> next(Block<OrderedPair<K, V>> block,  Optional<K> key) {
 		int index = key
 			.map(k -> index(block, k))
 			.map(i -> i >= 0 ?  i + 1 : -i-1)
 			.orElse(0);
-		if (index < block.size()) {
-			return Optional.of(subList(block, index).stream());
+		return run(block, index);
+	}
+	
+	private Optional<LeafRun<K, V>> follow(Block<OrderedPair<K, V>> block, long nonce, Optional<K> key) {
+		if (lock.header().filter(header -> header.nonce() == nonce).isPresent()) {
+			return Optional.of(next(block, key));
 		} else {
 			return Optional.empty();
 		}
 	}
+	
+	private LeafRun<K, V> run(Block<OrderedPair<K, V>> block, int index) {
+		List<OrderedPair<K,V>> entries = index < block.size() ? subList(block, index) : Collections.emptyList();
+		return lock.header()
+			.map(header -> LeafRun.of(entries, header.next(), header.nextNonce()))
+			.orElseGet(() -> LeafRun.unlinked(entries));
+	}
 
 	private void put(Block<OrderedPair<K,V>> block, OrderedPair<K,V> pair) throws SplitException {
 		if (!tryPut(block,pair)) {
-			int split = block.size() / 2;
-			parent().split(new SplitAction<>(this, split, block.get(split).key(), pair));
+			split(block, pair);
+		}
+	}
+	
+	/**
+	 * puts pairs under a single latch until the leaf splits, 
+	 * after which the remaining pairs may belong to the new leaf
+	 */
+	private int putAll(Block<OrderedPair<K,V>> block, List<OrderedPair<K,V>> pairs) throws SplitException {
+		for (int i = 0 ; i < pairs.size(); i++) {
+			OrderedPair<K,V> pair = pairs.get(i);
+			if (!tryPut(block, pair)) {
+				if (i == 0) {
+					split(block, pair);
+					return 1;
+				}
+				// report the pairs already put, and split when the caller routes this pair again
+				return i;
+			}
 		}
+		return pairs.size();
+	}
+	
+	private void split(Block<OrderedPair<K,V>> block, OrderedPair<K,V> reason) throws SplitException {
+		int split = block.size() / 2;
+		parent().split(new SplitAction<>(this, split, block.get(split).key(), reason));
+	}
+	
+	private List<OrderedPair<K, V>> getAll(Block<OrderedPair<K,V>> block, List<K> keys) {
+		parent().counters().accumulate(BTreeCounters.GETS, keys.size());
+		List<OrderedPair<K, V>> result = new ArrayList<>();
+		for (K key : keys) {
+			int index = index(block, key);
+			if (index >= 0) {
+				result.add(OrderedPair.of(key, block.get(index).value()));
+			}
+		}
+		return result;
 	}
 
 	private void remove(Block<OrderedPair<K, V>> block, K key) throws SplitException {
@@ -170,17 +261,13 @@ class LeafNode<K, V> extends AbstractNode<K, V> implements Leaf<K, V> {
 		return IntStream.range(split, block.size()).mapToObj(block::get);
 	}
 
-	private Optional<Stream<OrderedPair<K,V>>> start(Block<OrderedPair<K, V>> block, Optional<K> key) {
+	private LeafRun<K, V> start(Block<OrderedPair<K, V>> block, Optional<K> key) {
 		parent().counters().increment(BTreeCounters.GETS);
 		int index = key
 			.map(k -> index(block, k))
 			.map(i -> i >= 0 ? i : -i - 1)
 			.orElse(0);
-		if (index < block.size()) {
-			return Optional.of(subList(block, index).stream());
-		} else {
-			return Optional.empty();
-		}
+		return run(block, index);
 	}
 
 	private List<OrderedPair<K,V>> subList(Block<OrderedPair<K,V>> block, int index) {
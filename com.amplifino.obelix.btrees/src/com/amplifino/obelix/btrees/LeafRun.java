@@ -0,0 +1,69 @@
+package com.amplifino.obelix.btrees;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.amplifino.obelix.pairs.OrderedPair;
+
+/**
+ * 
+ * Entries read from a single leaf, with the right sibling link of that leaf
+ * 
+ */
+final class LeafRun<K,V> {
+	
+	static final long UNLINKED = -1L;
+	
+	private final List<OrderedPair<K,V>> entries;
+	private final long next;
+	private final long nextNonce;
+	
+	private LeafRun(List<OrderedPair<K,V>> entries, long next, long nextNonce) {
+		this.entries = entries;
+		this.next = next;
+		this.nextNonce = nextNonce;
+	}
+	
+	static <K,V> LeafRun<K,V> of(List<OrderedPair<K,V>> entries, long next, long nextNonce) {
+		return new LeafRun<>(entries, next, nextNonce);
+	}
+	
+	static <K,V> LeafRun<K,V> unlinked(List<OrderedPair<K,V>> entries) {
+		return new LeafRun<>(entries, UNLINKED, 0);
+	}
+	
+	static <K,V> LeafRun<K,V> empty() {
+		return unlinked(Collections.emptyList());
+	}
+	
+	boolean isEmpty() {
+		return entries.isEmpty();
+	}
+	
+	Stream<OrderedPair<K,V>> stream() {
+		return entries.stream();
+	}
+	
+	/**
+	 * tests if the run carries the right sibling link of its leaf
+	 */
+	boolean isLinked() {
+		return next != UNLINKED;
+	}
+	
+	/**
+	 * tests if the run comes from the rightmost leaf
+	 */
+	boolean isLast() {
+		return next == 0;
+	}
+	
+	long next() {
+		return next;
+	}
+	
+	long nextNonce() {
+		return nextNonce;
+	}
+}
@@ -1,7 +1,7 @@
 package com.amplifino.obelix.btrees;
 
+import java.util.List;
 import java.util.Optional;
-import java.util.stream.Stream;
 
 import com.amplifino.obelix.pairs.OrderedPair;
 
@@ -9,10 +9,18 @@ interface Node<K,V> {
 	
 	void put(K key , V value) throws SplitException;
 	void remove(K key) throws SplitException;
+	/**
+	 * puts a non empty prefix of the pairs, sorted on key, and returns the prefix length
+	 */
+	int putAll(List<OrderedPair<K,V>> pairs) throws SplitException;
 
 	int compare(K key1, K key2);
 	Optional<V> get(K key) throws SplitException;
-	Stream<OrderedPair<K,V>> start(Optional<K> key) throws SplitException;
-	Stream<OrderedPair<K,V>> next(Optional<K> key) throws SplitException;
+	/**
+	 * looks up a non empty prefix of the sorted keys, adding the pairs found, and returns the prefix length
+	 */
+	int getAll(List<K> keys, List<OrderedPair<K,V>> found) throws SplitException;
+	LeafRun<K,V> start(Optional<K> key) throws SplitException;
+	LeafRun<K,V> next(Optional<K> key) throws SplitException;
 	Optional<K> trySplit(Optional<K> startKey, Optional<K> endKey)  throws SplitException;
 } 
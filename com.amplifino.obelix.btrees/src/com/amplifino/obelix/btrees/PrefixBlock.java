@@ -0,0 +1,204 @@
+package com.amplifino.obelix.btrees;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amplifino.obelix.stores.Block;
+
+/**
+ * Block storing the longest common prefix of its elements once
+ * 
+ * <p> The first record of the underlying block holds the prefix, the following records hold the element suffixes.
+ * Adding or setting an element that does not start with the prefix shortens the prefix, rewriting the block.
+ * Truncating the block, as done on splits, lengthens the prefix to the common prefix of the remaining elements.</p>
+ * 
+ * <p> The prefix record takes a slot in the record directory of the underlying block.
+ * To still fit any two elements in a block, the maximum element length is two bytes less than for the underlying block,
+ * longer elements are rejected.</p>
+ * 
+ * <p> As keys are serialized first in branch entries and in pairs of LongValuePairInjection, 
+ * the prefix covers the key bytes shared by all entries in the block.</p>
+ * 
+ */
+final class PrefixBlock implements Block<byte[]> {
+	
+	private static final byte[] EMPTY = new byte[0];
+	private final Block<byte[]> block;
+	private final long maxLength;
+	
+	private PrefixBlock(Block<byte[]> block, long capacity) {
+		this.block = block;
+		// block size, prefix record and two elements in the record directory
+		this.maxLength = (capacity - 4 * Integer.BYTES) / 2;
+	}
+	
+	/**
+	 * returns a prefix compressed view on a block with the given capacity in bytes
+	 */
+	static PrefixBlock on(Block<byte[]> block, long capacity) {
+		return new PrefixBlock(block, capacity);
+	}
+	
+	@Override
+	public int size() {
+		return block.isEmpty() ? 0 : block.size() - 1;
+	}
+	
+	@Override
+	public byte[] get(int index) {
+		check(index, size() - 1);
+		byte[] prefix = block.get(0);
+		byte[] suffix = block.get(index + 1);
+		byte[] result = new byte[prefix.length + suffix.length];
+		System.arraycopy(prefix, 0, result, 0, prefix.length);
+		System.arraycopy(suffix, 0, result, prefix.length, suffix.length);
+		return result;
+	}
+	
+	@Override
+	public boolean set(int index, byte[] element) {
+		check(index, size() - 1);
+		checkLength(element);
+		byte[] prefix = block.get(0);
+		if (commonPrefix(prefix, element) == prefix.length) {
+			return block.set(index + 1, suffix(element, prefix.length));
+		} else {
+			List<byte[]> elements = elements();
+			elements.set(index, element);
+			return rewrite(elements, commonPrefix(prefix, element));
+		}
+	}
+	
+	@Override
+	public boolean add(int index, byte[] element) {
+		check(index, size());
+		checkLength(element);
+		if (block.isEmpty()) {
+			if (!block.canTake(new byte[element.length + Integer.BYTES])) {
+				return false;
+			}
+			return block.add(element) && block.add(EMPTY);
+		}
+		byte[] prefix = block.get(0);
+		if (commonPrefix(prefix, element) == prefix.length) {
+			return block.add(index + 1, suffix(element, prefix.length));
+		} else {
+			List<byte[]> elements = elements();
+			elements.add(index, element);
+			return rewrite(elements, commonPrefix(prefix, element));
+		}
+	}
+	
+	@Override
+	public void remove(int index) {
+		check(index, size() - 1);
+		if (size() == 1) {
+			block.truncate(0);
+		} else {
+			block.remove(index + 1);
+		}
+	}
+	
+	@Override
+	public void truncate(int end) {
+		if (end == 0) {
+			block.truncate(0);
+			return;
+		}
+		block.truncate(end + 1);
+		byte[] first = block.get(1);
+		int extension = first.length;
+		for (int i = 2 ; i <= end && extension > 0; i++) {
+			extension = Math.min(extension, commonPrefix(first, block.get(i)));
+		}
+		if (extension > 0) {
+			List<byte[]> elements = elements();
+			if (!rewrite(elements, block.get(0).length + extension)) {
+				throw new IllegalStateException();
+			}
+		}
+	}
+	
+	@Override
+	public boolean canTake(byte[] element) {
+		if (block.isEmpty()) {
+			return block.canTake(new byte[element.length + Integer.BYTES]);
+		}
+		byte[] prefix = block.get(0);
+		int common = commonPrefix(prefix, element);
+		int growth = (prefix.length - common) * size();
+		return block.canTake(new byte[growth + element.length - common]);
+	}
+	
+	private List<byte[]> elements() {
+		List<byte[]> elements = new ArrayList<>(size());
+		for (int i = 0 ; i < size(); i++) {
+			elements.add(get(i));
+		}
+		return elements;
+	}
+	
+	/**
+	 * rewrites the block with the given prefix length, restoring the current content if the elements do not fit
+	 */
+	private boolean rewrite(List<byte[]> elements, int prefixLength) {
+		List<byte[]> current = new ArrayList<>(block.size());
+		for (int i = 0 ; i < block.size() ; i++) {
+			current.add(block.get(i));
+		}
+		block.truncate(0);
+		if (write(elements, prefixLength)) {
+			return true;
+		}
+		block.truncate(0);
+		current.forEach(block::add);
+		return false;
+	}
+	
+	private boolean write(List<byte[]> elements, int prefixLength) {
+		if (!block.add(suffix(elements.get(0), 0, prefixLength))) {
+			return false;
+		}
+		for (byte[] element : elements) {
+			if (!block.add(suffix(element, prefixLength))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void checkLength(byte[] element) {
+		if (element.length > maxLength) {
+			throw new IllegalArgumentException("Length " + element.length + " exceeds block maximum allowed record length of " + maxLength);
+		}
+	}
+	
+	private void check(int index, int max) {
+		if (index < 0 || index > max) {
+			throw new IllegalArgumentException("Invalid index: " + index);
+		}
+	}
+	
+	private static byte[] suffix(byte[] element, int start) {
+		return suffix(element, start, element.length);
+	}
+	
+	private static byte[] suffix(byte[] element, int start, int end) {
+		byte[] result = new byte[end - start];
+		System.arraycopy(element, start, result, 0, result.length);
+		return result;
+	}
+	
+	/**
+	 * returns the length of the common prefix of two byte arrays
+	 */
+	static int commonPrefix(byte[] first, byte[] second) {
+		int length = Math.min(first.length, second.length);
+		for (int i = 0 ; i < length ; i++) {
+			if (first[i] != second[i]) {
+				return i;
+			}
+		}
+		return length;
+	}
+}
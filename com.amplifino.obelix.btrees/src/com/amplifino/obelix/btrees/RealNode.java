@@ -6,6 +6,8 @@ interface RealNode<K,V> extends Node<K,V> {
 	RealNode<K,V> parent(Branch<K,V> parent);
 	RealNode<K,V> split(int split) throws SplitException;
 	K firstKey() throws SplitException;
+	K separator(int split) throws SplitException;
 	long tag();
 	void truncate(int split);
+	void link(RealNode<K,V> sibling);
 }
@@ -1,7 +1,9 @@
 package com.amplifino.obelix.btrees;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.function.Consumer;
@@ -58,6 +60,11 @@ class RootNode<K,V> implements Branch<K,V> {
 		return bTree.counters();
 	}
 	
+	@Override
+	public K separator(K left, K right) {
+		return bTree.separator(left, right);
+	}
+	
 	@Override
 	public void free(long tag) {
 		counters().increment(BTreeCounters.FREES);
@@ -69,6 +76,20 @@ class RootNode<K,V> implements Branch<K,V> {
 		return splitState.retryGet(root -> get(root, key)); 
 	}
 	
+	@Override
+	public int getAll(List<K> keys, List<OrderedPair<K,V>> found) {
+		int done = 0;
+		while (done < keys.size()) {
+			List<K> rest = keys.subList(done, keys.size());
+			Optional<Integer> count = splitState.retryGet(root -> root.getAll(rest, found));
+			if (!count.isPresent()) {
+				break;
+			}
+			done += count.get();
+		}
+		return keys.size();
+	}
+	
 	public Stream<OrderedPair<K,V>> graph(Optional<K> startKey, Optional<K> endKey) {
 		return StreamSupport.stream(() -> new BTreeSplitIterator(startKey, endKey), BTreeSplitIterator.CHARACTERISTICS, false);
 	}
@@ -83,13 +104,13 @@ class RootNode<K,V> implements Branch<K,V> {
 	}
 	
 	@Override
-	public Stream<OrderedPair<K,V>> next(Optional<K> key) {
-		return splitState.retryGet(root -> next(root, key)).orElse(Stream.empty());
+	public LeafRun<K,V> next(Optional<K> key) {
+		return splitState.retryGet(root -> next(root, key)).orElse(LeafRun.empty());
 	}
 	
 	@Override
-	public Stream<OrderedPair<K,V>> next(RealNode<K,V> child) {
-		return Stream.empty();
+	public LeafRun<K,V> next(RealNode<K,V> child) {
+		return LeafRun.empty();
 	}
 	
 	@Override
@@ -114,6 +135,16 @@ class RootNode<K,V> implements Branch<K,V> {
 	public void put(K key, V value) {
 		splitState.retryPut( root -> put(root, key, value));
 	}
+	
+	@Override
+	public int putAll(List<OrderedPair<K,V>> pairs) {
+		int done = 0;
+		while (done < pairs.size()) {
+			List<OrderedPair<K,V>> rest = pairs.subList(done, pairs.size());
+			done += splitState.retryPutAll(root -> putAll(root, rest));
+		}
+		return done;
+	}
 
 	@Override
 	public void refresh(long tag) {
@@ -137,7 +168,7 @@ class RootNode<K,V> implements Branch<K,V> {
 			action.prepare();
 			action.commit();			
 			long rootTag = allocateBranch(); 	
-			RealNode<K,V> newRoot = new BranchNode<> (this, rootTag, action.existingNode().tag(), action.newNode());
+			RealNode<K,V> newRoot = new BranchNode<> (this, rootTag, action.existingNode().tag(), action.newNode(), action.entry().key());
 			newRoot.put(action.reason().key(), action.reason().value());
 			return Optional.of(newRoot);
 		});
@@ -145,8 +176,22 @@ class RootNode<K,V> implements Branch<K,V> {
 	}
 
 	@Override 
-	public Stream<OrderedPair<K,V>> start(Optional<K> key) {
-		return splitState.retryGet(root -> root.start(key)).orElse(Stream.empty());
+	public LeafRun<K,V> start(Optional<K> key) {
+		return splitState.retryGet(root -> root.start(key)).orElse(LeafRun.empty());
+	}
+	
+	void bulkLoad(Stream<OrderedPair<K,V>> sorted, double fillFactor) {
+		if (splitState.root().isPresent()) {
+			throw new IllegalStateException("BTree is not empty");
+		}
+		OptionalLong rootTag = new BulkLoader<>(bTree, this, fillFactor).load(sorted);
+		if (rootTag.isPresent()) {
+			try {
+				splitState.newRoot(Optional.empty(), root -> Optional.of(node(this, rootTag.getAsLong())));
+			} catch (SplitException e) {
+				throw new IllegalStateException("BTree updated during bulk load", e);
+			}
+		}
 	}
 	
 	private void clearRoot() throws SplitException {
@@ -157,7 +202,7 @@ class RootNode<K,V> implements Branch<K,V> {
 		return root.get(key).orElse(null);
 	}
 	
-	private Stream<OrderedPair<K,V>> next(RealNode<K,V> root, Optional<K> key) throws SplitException {
+	private LeafRun<K,V> next(RealNode<K,V> root, Optional<K> key) throws SplitException {
 		return root.next(key);
 	}
 	
@@ -170,6 +215,15 @@ class RootNode<K,V> implements Branch<K,V> {
 		}
 	}
 	
+	private int putAll(Optional<RealNode<K,V>> root, List<OrderedPair<K,V>> pairs) throws SplitException {
+		if (root.isPresent()) {
+			return root.get().putAll(pairs);
+		} else {
+			put(root, pairs.get(0).key(), pairs.get(0).value());
+			return 1;
+		}
+	}
+	
 	private void remove(Optional<RealNode<K,V>> root, K key)  throws SplitException {
 		if (root.isPresent()) {
 			root.get().remove(key);
@@ -185,22 +239,29 @@ class RootNode<K,V> implements Branch<K,V> {
 		private static final int CHARACTERISTICS = ORDERED | DISTINCT | NONNULL | SORTED | CONCURRENT;
 		private Optional<K> startKey;
 		private Optional<K> endKey;
+		private LeafRun<K,V> run;
 		private Spliterator<OrderedPair<K,V>> spliterator;
 
 		BTreeSplitIterator(Optional<K> startKey, Optional<K> endKey) {
 			super(Long.MAX_VALUE, CHARACTERISTICS);
 			this.startKey = startKey;
 			this.endKey = endKey;
-			spliterator = start(startKey).filter(this::filter).spliterator();
+			run(start(startKey));
 		}
 		
 		BTreeSplitIterator(BTreeSplitIterator splitee , K splitKey) {
 			super(Long.MAX_VALUE, CHARACTERISTICS);
 			this.startKey = splitee.startKey;
 			this.endKey = Optional.of(splitKey);
+			this.run = splitee.run;
 			this.spliterator = splitee.spliterator;
 		}
 		
+		private void run(LeafRun<K,V> run) {
+			this.run = run;
+			this.spliterator = run.stream().filter(this::filter).spliterator();
+		}
+		
 		@Override
 		public Comparator<OrderedPair<K,V>> getComparator() {
 			return Comparator.comparing(OrderedPair::key, bTree.comparator());
@@ -221,9 +282,43 @@ class RootNode<K,V> implements Branch<K,V> {
 			if (spliterator.tryAdvance(totalAction)) {
 					return true;
 			}
-			spliterator = next(startKey).filter(this::filter).spliterator();
+			while (run.isLinked()) {
+				if (run.isLast()) {
+					return false;
+				}
+				Optional<LeafRun<K,V>> linked = follow(run);
+				if (!linked.isPresent()) {
+					break;
+				}
+				run(linked.get());
+				if (spliterator.tryAdvance(totalAction)) {
+					return true;
+				}
+				if (!run.isEmpty()) {
+					// next entry is at or beyond the end key
+					return false;
+				}
+			}
+			run(next(startKey));
 			return spliterator.tryAdvance(totalAction);
 		}
+		
+		/**
+		 * walks to the right sibling of the leaf that produced the run, without descending from the root.
+		 * Returns empty if the sibling was removed or the read conflicts with a writer, 
+		 * in which case the caller descends from the root with the last key
+		 */
+		private Optional<LeafRun<K,V>> follow(LeafRun<K,V> run) {
+			try {
+				Optional<LeafRun<K,V>> result = new LeafNode<>(RootNode.this, run.next()).follow(run.nextNonce(), startKey);
+				if (result.isPresent()) {
+					counters().increment(BTreeCounters.LINKS);
+				}
+				return result;
+			} catch (SplitException e) {
+				return Optional.empty();
+			}
+		}
 
 		@Override
 		public Spliterator<OrderedPair<K,V>> trySplit() {
@@ -231,7 +326,7 @@ class RootNode<K,V> implements Branch<K,V> {
 			if (splitKey.isPresent()) {			
 				Spliterator<OrderedPair<K,V>> result = new BTreeSplitIterator(this, splitKey.get());
 				this.startKey = splitKey;
-				this.spliterator = start(splitKey).filter(this::filter).spliterator();
+				run(start(splitKey));
 				return result;
 			} else {
 				return null;
@@ -2,17 +2,16 @@ package com.amplifino.obelix.btrees;
 
 import java.util.Optional;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.amplifino.counters.Accumulators;
 
 class RootSplitState<K,V> {
 	
-	private Optional<RealNode<K,V>> root;
+	private volatile Optional<RealNode<K,V>> root;
 	private final ConcurrentBlockSpace space;
 	private final Accumulators<BTreeCounters> counters;
-	private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+	private final Lock lock = new ReentrantLock(true);
 	
 
 	RootSplitState(Optional<RealNode<K,V>> root, ConcurrentBlockSpace space, Accumulators<BTreeCounters> counters) {
@@ -22,18 +21,11 @@ class RootSplitState<K,V> {
 	}
 
 	Optional<RealNode<K,V>> root() {
-		Lock readLock = lock.readLock();
-		readLock.lock();
-		try {
-			return root;
-		} finally {
-			readLock.unlock();
-		}
+		return root;
 	}
 	
 	void newRoot(Optional<RealNode<K,V>> oldRoot , NewRootProvider<K,V> operator) throws SplitException {
-		Lock writeLock = lock.writeLock();
-		writeLock.lock();
+		lock.lock();
 		try {
 			if (this.root.equals(oldRoot)) {
 				this.root = operator.apply(this.root);
@@ -42,7 +34,7 @@ class RootSplitState<K,V> {
 				throw new SplitException();
 			}
 		} finally {
-			writeLock.unlock();
+			lock.unlock();
 		}
 	}
 	 
@@ -70,6 +62,17 @@ class RootSplitState<K,V> {
 		}
 	}
 	
+	int retryPutAll(PutAllWithRetry<K,V> putter)  {
+		int i = 0;
+		for(Optional<RealNode<K,V>> currentRoot = root();;currentRoot = root()) {
+			try {
+				return putter.put(currentRoot);
+			} catch(SplitException e) {
+				i = check(i);
+			}
+		}
+	}
+	
 	private int check(int count) {
 		counters.increment(BTreeCounters.RESTARTS).accumulate(BTreeCounters.MAXRESTARTS, count + 1);		
 		return count + 1;
@@ -85,6 +88,11 @@ class RootSplitState<K,V> {
 		void put(Optional<RealNode<K,V>> root) throws SplitException;
 	}
 	
+	@FunctionalInterface
+	interface PutAllWithRetry<K,V> {
+		int put(Optional<RealNode<K,V>> root) throws SplitException;
+	}
+	
 	@FunctionalInterface
 	interface NewRootProvider<K,V> {
 		Optional<RealNode<K,V>> apply(Optional<RealNode<K,V>> oldRoot) throws SplitException;
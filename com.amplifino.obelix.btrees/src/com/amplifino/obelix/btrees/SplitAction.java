@@ -21,11 +21,12 @@ class SplitAction<K,V> {
 	
 	LongValuePair<K> prepare() throws SplitException {
 		this.newNode = existingNode.split(split);
-		this.entry = LongValuePair.of(newNode.firstKey(), newNode.tag());
+		this.entry = LongValuePair.of(existingNode.separator(split), newNode.tag());
 		return entry;
 	}
 	
 	void commit() {
+		existingNode.link(newNode);
 		existingNode.truncate(split);
 		existingNode.parent().refresh(existingNode.tag());
 	}
@@ -43,6 +44,10 @@ class SplitAction<K,V> {
 		return newNode;
 	}
 	
+	LongValuePair<K> entry() {
+		return entry;
+	}
+	
 	int split() {
 		return split();
 	}
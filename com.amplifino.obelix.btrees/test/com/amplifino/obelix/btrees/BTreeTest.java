@@ -1,15 +1,21 @@
 package com.amplifino.obelix.btrees;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 
@@ -98,4 +104,213 @@ public class BTreeTest {
 		byteSpace.close();
 	}
 
+	@Test
+	public void testOptimisticReads() {
+		BlockSpace space = BlockSpace.on(new HeapSpace(), 4096, 0);
+		BTree<String, Long> tree = BTree.on(
+				space, 
+				Comparator.naturalOrder(), 
+				RawInjections.strings(), 
+				LongValuePairInjection.of(RawInjections.strings()).boxed());
+		int limit = 100000;
+		IntStream.range(0, limit).filter(i -> i % 2 == 0).forEach(i -> tree.put(Integer.toString(i), (long) i));
+		Counts snapshot = tree.counts();
+		IntStream.range(0, 2 * limit)
+			.parallel()
+			.forEach(i -> {
+				int key = i >>> 1;
+				if ((i & 1) == 0) {
+					tree.put(Integer.toString(key | 1), (long) key);
+				} else {
+					assertEquals(Long.valueOf(key & ~1), tree.get(Integer.toString(key & ~1)).get());
+				}
+			});
+		snapshot = tree.counts().delta(snapshot, Counts::print);
+		assertEquals((long) limit, tree.graph().parallel().count());
+		assertTrue(IntStream.range(0, limit).allMatch(i -> tree.get(Integer.toString(i)).isPresent()));
+	}
+
+	@Test
+	public void testLinkedScan() {
+		BlockSpace space = BlockSpace.on(new HeapSpace(), 4096, BTree.BLOCKOVERHEAD);
+		BTree<String, Long> tree = BTree.on(
+				space, 
+				Comparator.naturalOrder(), 
+				RawInjections.strings(), 
+				LongValuePairInjection.of(RawInjections.strings()).boxed());
+		int limit = 100000;
+		IntStream.range(0, limit).parallel().forEach(i -> tree.put(String.format("%06d", i), (long) i));
+		Counts snapshot = tree.counts();
+		assertEquals((long) limit, tree.graph().count());
+		snapshot = tree.counts().delta(snapshot, Counts::print);
+		assertTrue(snapshot.get(BTreeCounters.LINKS) > 0);
+		assertEquals(1000L, tree.graph("001000", "002000").count());
+		assertEquals((long) limit, tree.graph().parallel().count());
+		IntStream.range(0, limit).filter(i -> (i / 100) % 2 == 0).parallel().forEach(i -> tree.remove(String.format("%06d", i)));
+		assertEquals((long) limit / 2, tree.graph().count());
+		assertEquals(500L, tree.graph("001000", "002000").count());
+		IntStream.range(0, limit)
+			.parallel()
+			.forEach(i -> {
+				if (i % 2 == 0) {
+					tree.put(String.format("%06d", i / 2), (long) i);
+				} else {
+					tree.graph(String.format("%06d", i / 2), String.format("%06d", i / 2 + 500))
+						.map(OrderedPair::key)
+						.reduce((previous, next) -> {
+							assertTrue(previous.compareTo(next) < 0);
+							return next;
+						});
+				}
+			});
+		assertEquals((long) limit * 3 / 4, tree.graph().count());
+	}
+
+	@Test
+	public void testBulkLoad() {
+		int limit = 200000;
+		for (boolean parallel : new boolean[] { false, true }) {
+			BlockSpace space = BlockSpace.on(new HeapSpace(), 4096, BTree.BLOCKOVERHEAD);
+			BTree<String, Long> tree = BTree.on(
+					space, 
+					Comparator.naturalOrder(), 
+					RawInjections.strings(), 
+					LongValuePairInjection.of(RawInjections.strings()).boxed());
+			IntStream range = IntStream.range(0, limit);
+			tree.bulkLoad((parallel ? range.parallel() : range).mapToObj(i -> OrderedPair.of(String.format("%07d", 2 * i), (long) i)), 0.8);
+			assertEquals((long) limit, tree.counts().get(BTreeCounters.INSERTS));
+			assertEquals((long) limit, tree.graph().count());
+			assertEquals((long) limit, tree.graph().parallel().count());
+			assertEquals(500L, tree.graph("0001000", "0002000").count());
+			assertTrue(IntStream.range(0, limit).parallel().allMatch(i -> tree.get(String.format("%07d", 2 * i)).get() == i));
+			IntStream.range(0, limit).parallel().forEach(i -> tree.put(String.format("%07d", 2 * i + 1), (long) i));
+			assertEquals(2L * limit, tree.graph().count());
+			try {
+				tree.bulkLoad(Stream.of(OrderedPair.of("a", 1L)), 1);
+				fail();
+			} catch (IllegalStateException e) {
+			}
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testBulkLoadUnsorted() {
+		BlockSpace space = BlockSpace.on(new HeapSpace(), 1024, BTree.BLOCKOVERHEAD);
+		BTree<String, Long> tree = BTree.on(
+				space, 
+				Comparator.naturalOrder(), 
+				RawInjections.strings(), 
+				LongValuePairInjection.of(RawInjections.strings()).boxed());
+		tree.bulkLoad(Stream.of(OrderedPair.of("b", 1L), OrderedPair.of("a", 2L)), 1);
+	}
+
+	@Test
+	public void testBatches() {
+		BlockSpace space = BlockSpace.on(new HeapSpace(), 4096, BTree.BLOCKOVERHEAD);
+		BTree<String, Long> tree = BTree.on(
+				space, 
+				Comparator.naturalOrder(), 
+				RawInjections.strings(), 
+				LongValuePairInjection.of(RawInjections.strings()).boxed());
+		int batches = 100;
+		int batchSize = 2000;
+		IntStream.range(0, batches)
+			.parallel()
+			.forEach(batch -> tree.putAll(IntStream.range(0, batchSize)
+				.mapToObj(i -> OrderedPair.of(String.format("%07d", i * batches + batch), (long) batch))
+				.collect(Collectors.toList())));
+		assertEquals((long) batches * batchSize, tree.graph().count());
+		assertEquals((long) batches * batchSize, tree.counts().get(BTreeCounters.INSERTS));
+		tree.putAll(Arrays.asList(OrderedPair.of("0000000", -1L), OrderedPair.of("0000000", -2L)));
+		assertEquals(Long.valueOf(-2L), tree.get("0000000").get());
+		List<String> keys = IntStream.range(0, 2 * batchSize)
+			.mapToObj(i -> String.format("%07d", (i * 7919) % (2 * batches * batchSize)))
+			.collect(Collectors.toList());
+		SortedMap<String, Long> found = tree.getAll(keys);
+		assertEquals(keys.stream().filter(key -> Integer.parseInt(key) < batches * batchSize).distinct().count(), (long) found.size());
+		found.forEach((key, value) -> assertEquals(tree.get(key).get(), value));
+		assertTrue(tree.getAll(Collections.emptyList()).isEmpty());
+	}
+
+	@Test
+	public void testCompression() {
+		long[] allocations = new long[2];
+		for (int overhead : new int[] { 0 , BTree.BLOCKOVERHEAD }) {
+			BlockSpace space = BlockSpace.on(new HeapSpace(), 4096, overhead);
+			BTree<String, Long> tree = BTree.on(
+					space, 
+					Comparator.naturalOrder(), 
+					RawInjections.strings(), 
+					LongValuePairInjection.of(RawInjections.strings()).boxed());
+			int limit = 100000;
+			IntStream.range(0, limit)
+				.parallel()
+				.forEach(i -> tree.put(key(i), (long) i));
+			tree.remove(key(0));
+			tree.put(key(0), 0L);
+			tree.put("/", -1L);
+			assertEquals(limit + 1L, tree.graph().count());
+			assertEquals(Long.valueOf(-1L), tree.get("/").get());
+			assertTrue(IntStream.range(0, limit).parallel().allMatch(i -> tree.get(key(i)).get() == i));
+			tree.graph()
+				.map(OrderedPair::key)
+				.reduce((previous, next) -> {
+					assertTrue(previous.compareTo(next) < 0);
+					return next;
+				});
+			allocations[overhead == 0 ? 0 : 1] = tree.counts().get(BTreeCounters.ALLOCATIONS);
+		}
+		assertTrue(allocations[1] * 2 < allocations[0]);
+	}
+	
+	@Test
+	public void testMaximumLength() {
+		for (int overhead : new int[] { 0 , BTree.BLOCKOVERHEAD }) {
+			BlockSpace space = BlockSpace.on(new HeapSpace(), 256, overhead);
+			BTree<String, Long> tree = BTree.on(
+					space, 
+					Comparator.naturalOrder(), 
+					RawInjections.strings(), 
+					LongValuePairInjection.of(RawInjections.strings()).boxed());
+			// any two records of maximum length fit in a block, also with the prefix record of a compressed block
+			int keyLength = (256 - overhead - 4 * Integer.BYTES) / 2 - Long.BYTES;
+			List<String> keys = Stream.of("a", "b", "c")
+				.map(first -> first + String.join("", Collections.nCopies(keyLength - 1, "x")))
+				.collect(Collectors.toList());
+			keys.forEach(key -> tree.put(key, (long) key.charAt(0)));
+			keys.forEach(key -> assertEquals(Long.valueOf(key.charAt(0)), tree.get(key).get()));
+			if (overhead > 0) {
+				try {
+					tree.put(keys.get(0) + "x", 0L);
+					fail();
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testSeparator() {
+		BTree<String, Long> strings = BTree.on(
+				BlockSpace.on(new HeapSpace(), 1024, BTree.BLOCKOVERHEAD), 
+				Comparator.naturalOrder(), 
+				RawInjections.strings(), 
+				LongValuePairInjection.of(RawInjections.strings()).boxed());
+		assertEquals("/b", strings.separator("/a/long/path", "/b/long/path"));
+		assertEquals("/b/long/", strings.separator("/b/long", "/b/long/path"));
+		// a prefix ending inside a multi byte character is not used
+		assertEquals("/\u00e9t\u00e9", strings.separator("/a", "/\u00e9t\u00e9"));
+		BTree<Long, Long> longs = BTree.on(
+				BlockSpace.on(new HeapSpace(), 1024, BTree.BLOCKOVERHEAD), 
+				Comparator.naturalOrder(), 
+				RawInjections.longs(), 
+				LongValuePairInjection.of(RawInjections.longs()).boxed());
+		assertEquals(Long.valueOf(1L << 40), longs.separator(1L, 1L << 40));
+	}
+	
+	private String key(int i) {
+		return String.format("/warehouse/sales/region=europe/country=belgium/year=2017/part-%07d.parquet", i);
+	}
+
 }
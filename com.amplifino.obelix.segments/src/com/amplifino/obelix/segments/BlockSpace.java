@@ -5,7 +5,6 @@ import com.amplifino.obelix.stores.ByteSpaceBlock;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.LongStream;
 
 /**
  * 
@@ -96,6 +95,21 @@ public final class BlockSpace extends HighWaterMarkSpace  {
 		return space().slice(offset(blockNumber) + overhead, blockSize - overhead);
 	}
 
+	public long blockSize() {
+		return blockSize;
+	}
+	
+	public int overhead() {
+		return overhead;
+	}
+	
+	/**
+	 * returns the overhead bytes of a block, that precede the bytes returned by get
+	 */
+	public ByteSpace overhead(long blockNumber) {
+		return space().slice(offset(blockNumber), overhead);
+	}
+	
 	public long allocate() {
 		return freeList.find(1).orElseGet(() -> allocateBlock());
 	}
@@ -120,9 +134,7 @@ public final class BlockSpace extends HighWaterMarkSpace  {
 	}
 	
 	private void clear(long blockNumber) {
-		long longPosition = offset(blockNumber) >>> 3;
-		LongStream.range(0, blockSize >>> 3)
-			.forEach( delta -> space().putLong((longPosition + delta) << 3, 0L));
+		space().release(offset(blockNumber), blockSize);
 	}
 	
 	private class FreeListOwner implements FreeList.FreeListOwner {
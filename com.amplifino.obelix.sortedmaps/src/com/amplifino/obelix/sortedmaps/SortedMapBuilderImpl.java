@@ -102,7 +102,7 @@ class SortedMapBuilderImpl<K,V> implements SortedMapBuilder<K, V>, SortedMapType
 
 	@Override
 	public SortedInfiniteMap<K, V> visitBTree() {
-		BlockSpace blockSpace = currentTag <= 0 ? BlockSpace.on(space, blockSize, 0) : BlockSpace.on(space);
+		BlockSpace blockSpace = currentTag <= 0 ? BlockSpace.on(space, blockSize, BTree.BLOCKOVERHEAD) : BlockSpace.on(space);
 		if (currentTag <= 0) {
 			blockSpace.ownerTag(SortedMapTypes.BTREE.tag());
 		}
@@ -112,7 +112,7 @@ class SortedMapBuilderImpl<K,V> implements SortedMapBuilder<K, V>, SortedMapType
 	@Override
 	public SortedInfiniteMap<K, V> visitValueSegmentWithBTreeIndex() {
 		long splitOffset = currentTag == 0 ? split.orElse(Long.highestOneBit(space.capacity()) >>> 1) : Segment.next(space);
-		BlockSpace blockSpace = currentTag <= 0 ? BlockSpace.on(space, blockSize, 0) : BlockSpace.on(space);
+		BlockSpace blockSpace = currentTag <= 0 ? BlockSpace.on(space, blockSize, BTree.BLOCKOVERHEAD) : BlockSpace.on(space);
 		if (currentTag <= 0) {
 			blockSpace.ownerTag(SortedMapTypes.BTREE.tag()).next(splitOffset);
 		}
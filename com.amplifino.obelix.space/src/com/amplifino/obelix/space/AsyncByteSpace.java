@@ -0,0 +1,145 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.osgi.annotation.versioning.ProviderType;
+
+import com.amplifino.counters.Counters;
+import com.amplifino.counters.Counts;
+
+/**
+ * 
+ * An asynchronous byte space
+ * 
+ * <p>This interface is the asynchronous companion of {@link ByteSpace}, limited to bulk get and put.
+ * Operations return immediately, so a single thread can keep many reads in flight.</p>
+ * 
+ * <p>Implementations should be thread safe.
+ * Concurrent writes to the same area have an undefined outcome</p>
+ * 
+ */
+@ProviderType
+public interface AsyncByteSpace extends AutoCloseable {
+	
+	/**
+	 * 
+     * Asynchronous bulk <i>get</i> method.
+     *
+     * <p> Reads <code>length</code> bytes at the given address in this space.
+     * The returned ByteBuffer is positioned at zero, with <code>length</code> bytes remaining.</p>
+     *
+     * @param  position
+     * 		   The address from which bytes are copied
+     *
+     * @param  length
+     * 		   The  number of bytes to be copied from the given address.
+     *         must be non-negative
+     *
+     * @return  A future completed with the ByteBuffer wrapping the copied bytes,
+     * 			or completed exceptionally if an error occurs
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+     *
+	 */
+	CompletableFuture<ByteBuffer> getAsync(long position, int length);
+	
+	/**
+	 * 
+     * Asynchronous bulk <i>put</i> method.
+     *
+     * <p> Copies <code>buffer.remaining()</code> bytes from the given ByteBuffer
+     * into this space at the given address.
+     * The buffer should not be modified until the returned future completes</p>
+     *
+     * @param  position
+     * 		   The address to which bytes are copied
+     *
+     * @param  buffer
+     *         The buffer from which bytes are to be read
+     *
+     * @return  A future completed when all bytes are written,
+     * 			or completed exceptionally if an error occurs
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	CompletableFuture<Void> putAsync(long position, ByteBuffer buffer);
+	
+	/**
+	 * 
+     * Asynchronous bulk <i>put</i> method.
+     *
+     * <p> Copies the given bytes into this space at the given address.
+     * The array should not be modified until the returned future completes</p>
+     *
+     * @param  position
+     * 		   The address to which bytes are copied
+     *
+     * @param  bytes
+     *         The array from which bytes are to be read
+     *
+     * @return  A future completed when all bytes are written,
+     * 			or completed exceptionally if an error occurs
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default CompletableFuture<Void> putAsync(long position, byte[] bytes) {
+		return putAsync(position, ByteBuffer.wrap(bytes));
+	}
+	
+	/**
+     * Forces any changes made to this space's content to be written to the
+     * storage device if applicable.
+     * Writes that did not complete yet are not guaranteed to be forced.
+     *
+     * @throws  IOException
+     *        If an I/O error occurs
+	 * 
+     * @return  This space
+     */
+	AsyncByteSpace force() throws IOException;
+	
+	 /**
+     * Closes this space.
+     *
+     * @throws  IOException
+     *          If an I/O error occurs
+     */
+	@Override
+	void close() throws IOException;
+	
+	/**
+	 * get stats
+	 * 
+	 * <p>This method returns a snapshot of the current counts,
+	 * or an empty snapshot if the implementation does not support statistics.</p>
+	 * 
+	 * @return the counters snapshot.
+	 * 
+	 */
+	default Counts counts() {
+		return Counters.empty(SpaceCounters.class).counts();
+	}
+	
+	/**
+	 * adapts a ByteSpace to the asynchronous API.
+	 * 
+	 * <p>The returned space executes the blocking ByteSpace operations on the given executor,
+	 * typically a dedicated IO pool, so the calling thread is not blocked.
+	 * Closing the returned space closes the argument, but not the executor</p>
+	 * 
+	 * @param space the space to adapt
+	 * @param executor the executor running the blocking operations
+	 * @return the asynchronous space
+	 */
+	static AsyncByteSpace of(ByteSpace space, Executor executor) {
+		return new ExecutorAsyncSpace(space, executor);
+	}
+}
@@ -0,0 +1,160 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.amplifino.counters.Accumulators;
+import com.amplifino.counters.Counts;
+
+import static com.amplifino.obelix.space.SpaceCounters.*;
+
+/**
+ * Asynchronous Byte Space using a backing file with AsynchronousFileChannel IO
+ * 
+ * <p> Reads beyond the end of file return zero bytes, consistent with a sparse file.
+ * Partial reads and writes are resubmitted until the request is complete.</p>
+ * 
+ */
+public final class AsyncFileSpace implements AsyncByteSpace {
+	
+	private final AsynchronousFileChannel channel;
+	private final Accumulators<SpaceCounters> counters = Accumulators.of(SpaceCounters.class);
+	
+	private AsyncFileSpace(AsynchronousFileChannel channel) {
+		this.channel = channel;
+	}
+	
+	/**
+	 * creates an AsyncByteSpace backed by the given file, using the default thread pool for completion handling
+	 * If the file does not exist, a sparse file will be created
+	 * 
+	 * @param path the file backing the space
+	 * @return async byte space
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	public static AsyncFileSpace of(Path path) throws IOException {
+		return new AsyncFileSpace(AsynchronousFileChannel.open(path, options(path)));
+	}
+	
+	/**
+	 * creates an AsyncByteSpace backed by the given file, using the given executor for completion handling
+	 * If the file does not exist, a sparse file will be created
+	 * 
+	 * @param path the file backing the space
+	 * @param executor the executor handling IO completions
+	 * @return async byte space
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	public static AsyncFileSpace of(Path path, ExecutorService executor) throws IOException {
+		return new AsyncFileSpace(AsynchronousFileChannel.open(path, new HashSet<>(Arrays.asList(options(path))), executor));
+	}
+	
+	private static OpenOption[] options(Path path) {
+		if (Files.exists(path)) {
+			return new OpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+		} else {
+			return new OpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE };
+		}
+	}
+	
+	@Override
+	public CompletableFuture<ByteBuffer> getAsync(long position, int length) {
+		if (position < 0 || length < 0) {
+			throw new IllegalArgumentException("" + position + "-" + length);
+		}
+		counters.increment(LOGICALREADS).accumulate(BYTESREAD, length);
+		CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+		read(position, ByteBuffer.allocate(length), future);
+		return future;
+	}
+	
+	private void read(long position, ByteBuffer buffer, CompletableFuture<ByteBuffer> future) {
+		counters.increment(PHYSICALREADS);
+		channel.read(buffer, position + buffer.position(), null, new CompletionHandler<Integer, Void>() {
+			@Override
+			public void completed(Integer result, Void attachment) {
+				if (result < 0 || !buffer.hasRemaining()) {
+					// bytes beyond end of file are zero
+					buffer.clear();
+					future.complete(buffer);
+				} else {
+					read(position, buffer, future);
+				}
+			}
+			
+			@Override
+			public void failed(Throwable e, Void attachment) {
+				future.completeExceptionally(e);
+			}
+		});
+	}
+	
+	@Override
+	public CompletableFuture<Void> putAsync(long position, ByteBuffer buffer) {
+		if (position < 0) {
+			throw new IllegalArgumentException("" + position);
+		}
+		counters.increment(LOGICALWRITES).accumulate(BYTESWRITTEN, buffer.remaining());
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		write(position - buffer.position(), buffer, future);
+		return future;
+	}
+	
+	private void write(long base, ByteBuffer buffer, CompletableFuture<Void> future) {
+		counters.increment(PHYSICALWRITES);
+		channel.write(buffer, base + buffer.position(), null, new CompletionHandler<Integer, Void>() {
+			@Override
+			public void completed(Integer result, Void attachment) {
+				if (buffer.hasRemaining()) {
+					write(base, buffer, future);
+				} else {
+					future.complete(null);
+				}
+			}
+			
+			@Override
+			public void failed(Throwable e, Void attachment) {
+				future.completeExceptionally(e);
+			}
+		});
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementations calls force on the underlying AsynchronousFileChannel
+	 */
+	@Override
+	public AsyncFileSpace force() throws IOException {
+		channel.force(true);
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementations closes the underlying AsynchronousFileChannel.
+	 * Outstanding operations complete exceptionally
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	@Override
+	public Counts counts() {
+		return counters.counts();
+	}
+}
@@ -0,0 +1,828 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.amplifino.counters.Accumulators;
+import com.amplifino.counters.Counts;
+
+import static com.amplifino.obelix.space.SpaceCounters.*;
+
+/**
+ * Abstract class for ByteSpace implementations caching pages in a buffer pool
+ * 
+ * <p> Pages are cached in a fixed number of direct memory frames,
+ * giving explicit control over memory usage.
+ * Subclasses define how pages are read from and written to the backing store.</p>
+ * 
+ * <p> Every access pins the frame holding the page for the duration of the access.
+ * When all frames are in use, an unpinned frame is selected using the CLOCK (second chance) algorithm.
+ * Modified frames are written back when evicted and on force.</p>
+ * 
+ * <p> Hits never lock. Page misses only lock the pool to select a frame,
+ * the page is read and the evicted page written back without holding that lock.
+ * Concurrent misses on the same page wait for the first one to load it.</p>
+ * 
+ * <p> Subclasses can decline to load a page by overriding {@link #admit(long)}.
+ * Accesses to pages that are not admitted are passed to the space returned by {@link #bypass()},
+ * serialized with loading and evicting pages with the same lock stripe.</p>
+ * 
+ */
+public abstract class BufferPoolSpace implements ByteSpace {
+	
+	private static final int BYPASSLOCKS = 64;
+	
+	private final int pageShift;
+	private final int pageSize;
+	private final int offsetMask;
+	private final ByteOrder order;
+	private final Frame[] frames;
+	private final PageTable<Frame> pageTable = new PageTable<>();
+	private final Accumulators<SpaceCounters> counters = Accumulators.of(SpaceCounters.class);
+	private volatile long readahead;
+	private int frameCount;
+	private int clockHand;
+	private final ReentrantReadWriteLock[] bypassLocks = new ReentrantReadWriteLock[BYPASSLOCKS];
+	
+	/**
+	 * creates a new big endian BufferPoolSpace with <code>frames</code> frames with size <code>2^pageShift</code>
+	 * 
+	 * @param pageShift number of bits in the page shift
+	 * @param frames number of frames in the buffer pool
+	 * @throws IllegalArgumentException
+	 * 		if pageShift is smaller than 9 or greater than 30, or frames is not positive
+	 */
+	protected BufferPoolSpace(int pageShift, int frames) {
+		this(pageShift, frames, ByteOrder.BIG_ENDIAN);
+	}
+	
+	/**
+	 * creates a new BufferPoolSpace with <code>frames</code> frames with size <code>2^pageShift</code>,
+	 * encoding multi byte values in the given byte order
+	 * 
+	 * @param pageShift number of bits in the page shift
+	 * @param frames number of frames in the buffer pool
+	 * @param order the byte order
+	 * @throws IllegalArgumentException
+	 * 		if pageShift is smaller than 9 or greater than 30, or frames is not positive
+	 */
+	protected BufferPoolSpace(int pageShift, int frames, ByteOrder order) {
+		if (pageShift < 9 || pageShift > 30) {
+			throw new IllegalArgumentException("Illegal page shift: " + pageShift);
+		}
+		if (frames <= 0) {
+			throw new IllegalArgumentException("Illegal frame count: " + frames);
+		}
+		this.pageShift = pageShift;
+		this.pageSize = 1 << pageShift;
+		this.offsetMask = pageSize - 1;
+		this.frames = new Frame[frames];
+		this.order = order;
+		for (int i = 0 ; i < bypassLocks.length ; i++) {
+			bypassLocks[i] = new ReentrantReadWriteLock();
+		}
+	}
+	
+	/**
+	 * reads a page from the backing store into the buffer.
+	 * The buffer is positioned at zero, with limit equal to the page size.
+	 * Bytes not read, i.e. remaining on return, are set to zero.
+	 *  
+	 * @param page the page number
+	 * @param buffer the frame buffer
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	protected abstract void readPage(long page, ByteBuffer buffer) throws IOException;
+	
+	/**
+	 * writes a modified page to the backing store.
+	 * The buffer is positioned at zero, with limit equal to the page size.
+	 * 
+	 * @param page the page number
+	 * @param buffer the frame buffer
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	protected abstract void writePage(long page, ByteBuffer buffer) throws IOException;
+	
+	/**
+	 * tests if a page that is not in the buffer pool is loaded on access.
+	 * If not, the access is passed to {@link #bypass()}.
+	 * The default implementation admits all pages
+	 * 
+	 * @param page the page number
+	 * @return true if the page is to be loaded
+	 */
+	protected boolean admit(long page) {
+		return true;
+	}
+	
+	/**
+	 * returns the space serving accesses to pages not admitted to the buffer pool.
+	 * The space is addressed with the same positions as this space.
+	 * Must be overridden if {@link #admit(long)} is overridden
+	 * 
+	 * @return the space accessed for pages not in the buffer pool
+	 */
+	protected ByteSpace bypass() {
+		throw new IllegalStateException("No bypass space");
+	}
+	
+	private int getOffset(long position) {
+		return (int) position & offsetMask;
+	}
+	
+	/**
+	 * pins the frame holding the page at the given position, loading the page if needed.
+	 * Returns null, holding the bypass lock, if the page is not admitted
+	 */
+	private Frame pin(long position) {
+		long page = position >>> pageShift;
+		while (true) {
+			Frame frame = pageTable.get(page);
+			boolean hit = frame != null;
+			if (!hit) {
+				if (!admit(page)) {
+					if (lockBypass(page)) {
+						counters.increment(BYPASSES);
+						return null;
+					}
+					continue;
+				}
+				frame = load(page);
+			}
+			if (frame.pin(page)) {
+				if (hit) {
+					counters.increment(POOLHITS);
+				}
+				return frame;
+			}
+			// frame may be loading or evicting
+			frame.awaitRelease();
+		}
+	}
+	
+	private ReentrantReadWriteLock bypassLock(long page) {
+		return bypassLocks[(int) (page & (BYPASSLOCKS - 1))];
+	}
+	
+	private boolean lockBypass(long page) {
+		Lock lock = bypassLock(page).readLock();
+		lock.lock();
+		if (pageTable.get(page) == null) {
+			return true;
+		}
+		// loaded concurrently
+		lock.unlock();
+		return false;
+	}
+	
+	private void unlockBypass(long position) {
+		bypassLock(position >>> pageShift).readLock().unlock();
+	}
+	
+	/**
+	 * claims a frame for the page and publishes it, so concurrent misses on the page wait for this load.
+	 * The IO happens outside the pool lock, the claimed frame can not be pinned or selected by others
+	 */
+	private Frame load(long page) {
+		Frame frame;
+		synchronized (this) {
+			frame = pageTable.get(page);
+			if (frame != null) {
+				return frame;
+			}
+			counters.increment(PAGEFAULTS);
+			Frame claimed = victim();
+			pageTable.computeIfAbsent(page, p -> claimed);
+			frame = claimed;
+		}
+		try {
+			if (frame.page() != -1) {
+				evict(frame);
+			}
+			Lock lock = bypassLock(page).writeLock();
+			lock.lock();
+			try {
+				frame.read(page);
+			} finally {
+				lock.unlock();
+			}
+		} catch (RuntimeException e) {
+			pageTable.remove(page, frame);
+			frame.release();
+			throw e;
+		}
+		frame.release();
+		return frame;
+	}
+	
+	private Frame victim() {
+		if (frameCount < frames.length) {
+			counters.accumulate(RESIDENTBYTES, pageSize);
+			Frame frame = new Frame();
+			frame.claim();
+			frames[frameCount++] = frame;
+			return frame;
+		}
+		while (true) {
+			for (int i = 0 ; i < 2 * frames.length; i++) {
+				Frame frame = frames[clockHand];
+				clockHand = (clockHand + 1) % frames.length;
+				if (!frame.clearReference() && frame.claim()) {
+					return frame;
+				}
+			}
+			// all frames pinned, wait for other threads to make progress
+			Thread.yield();
+		}
+	}
+	
+	private void evict(Frame frame) {
+		Lock lock = bypassLock(frame.page()).writeLock();
+		lock.lock();
+		try {
+			// write back before unpublishing, so a reload of the page reads the latest content
+			frame.writeBack();
+			pageTable.remove(frame.page(), frame);
+			counters.increment(EVICTIONS);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementations writes back all modified frames
+	 */
+	@Override
+	public BufferPoolSpace force() throws IOException {
+		for (Frame frame : pageTable.values()) {
+			long page = frame.page();
+			if (frame.isDirty() && frame.pin(page)) {
+				try {
+					frame.writeBack();
+				} finally {
+					frame.unpin();
+				}
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementations forces the space
+	 */
+	@Override
+	public void close() throws IOException {
+		force();
+	}
+	
+	@Override
+	public ByteSpace get(long position, ByteBuffer buffer) {
+		int length = buffer.remaining();
+		counters.increment(LOGICALREADS).accumulate(BYTESREAD, length);
+		while (buffer.hasRemaining()) {
+			int offset = getOffset(position);
+			int chunk = Math.min(buffer.remaining(), pageSize - offset);
+			Frame frame = pin(position);
+			if (frame == null) {
+				ByteBuffer target = buffer.duplicate();
+				target.limit(target.position() + chunk);
+				try {
+					bypass().get(position, target);
+				} finally {
+					unlockBypass(position);
+				}
+				buffer.position(buffer.position() + chunk);
+			} else {
+				try {
+					buffer.put(frame.slice(offset, chunk));
+				} finally {
+					frame.unpin();
+				}
+			}
+			position += chunk;
+		}
+		return this;
+	}
+	
+	@Override
+	public ByteBuffer get(long position, int length) {
+		return ByteBuffer.wrap(getBytes(position, length)).order(order);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>If readahead is enabled, this implementation loads the readahead window beyond every returned chunk
+	 * into the buffer pool</p>
+	 */
+	@Override
+	public Stream<ByteBuffer> get(long position, long length, int maxChunkSize) {
+		long window = readahead;
+		if (window == 0) {
+			return ByteSpace.super.get(position, length, maxChunkSize);
+		}
+		if (maxChunkSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		if (length < 0 || position + length <= 0) {
+			throw new IllegalArgumentException();
+		}
+		Readahead scan = new Readahead(position, position + length, window, pageSize, this::touch, counters);
+		return LongStream.range(0, (length + maxChunkSize - 1) / maxChunkSize)
+			.mapToObj(chunk -> {
+				long start = position + chunk * maxChunkSize;
+				int size = (int) Math.min(maxChunkSize, position + length - start);
+				scan.access(start, size);
+				return get(start, size);
+			});
+	}
+	
+	private void touch(long position) {
+		Frame frame = pin(position);
+		if (frame == null) {
+			unlockBypass(position);
+		} else {
+			frame.unpin();
+		}
+	}
+	
+	@Override
+	public byte[] getBytes(long position, int length) {
+		byte[] bytes = new byte[length];
+		get(position, bytes);
+		return bytes;
+	}
+	
+	@Override
+	public ByteSpace put(long position, ByteBuffer buffer) {
+		int length = buffer.remaining();
+		counters.increment(LOGICALWRITES).accumulate(BYTESWRITTEN, length);
+		while (buffer.hasRemaining()) {
+			int offset = getOffset(position);
+			int chunk = Math.min(buffer.remaining(), pageSize - offset);
+			ByteBuffer source = buffer.duplicate();
+			source.limit(source.position() + chunk);
+			Frame frame = pin(position);
+			if (frame == null) {
+				try {
+					bypass().put(position, source);
+				} finally {
+					unlockBypass(position);
+				}
+			} else {
+				try {
+					frame.slice(offset, chunk).put(source);
+					frame.dirty();
+				} finally {
+					frame.unpin();
+				}
+			}
+			buffer.position(buffer.position() + chunk);
+			position += chunk;
+		}
+		return this;
+	}
+	
+	@Override
+	public ByteSpace get(long position, byte[] bytes, int start, int length) {
+		return get(position, ByteBuffer.wrap(bytes, start, length));
+	}
+	
+	@Override
+	public ByteSpace put(long position, byte[] bytes, int start, int length) {
+		return put(position, ByteBuffer.wrap(bytes, start, length));
+	}
+	
+	private boolean crossesPage(long position, int length) {
+		return getOffset(position) + length > pageSize;
+	}
+	
+	@Override
+	public byte get(long position) {
+		counters.increment(LOGICALREADS).accumulate(BYTESREAD, Byte.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				return bypass().get(position);
+			} finally {
+				unlockBypass(position);
+			}
+		}
+		try {
+			return frame.buffer().get(getOffset(position));
+		} finally {
+			frame.unpin();
+		}
+	}
+	
+	@Override
+	public short getShort(long position) {
+		if (crossesPage(position, Short.BYTES)) {
+			return get(position, Short.BYTES).getShort();
+		}
+		counters.increment(LOGICALREADS).accumulate(BYTESREAD, Short.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				return bypass().getShort(position);
+			} finally {
+				unlockBypass(position);
+			}
+		}
+		try {
+			return frame.buffer().getShort(getOffset(position));
+		} finally {
+			frame.unpin();
+		}
+	}
+	
+	@Override
+	public char getChar(long position) {
+		if (crossesPage(position, Character.BYTES)) {
+			return get(position, Character.BYTES).getChar();
+		}
+		counters.increment(LOGICALREADS).accumulate(BYTESREAD, Character.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				return bypass().getChar(position);
+			} finally {
+				unlockBypass(position);
+			}
+		}
+		try {
+			return frame.buffer().getChar(getOffset(position));
+		} finally {
+			frame.unpin();
+		}
+	}
+	
+	@Override
+	public int getInt(long position) {
+		if (crossesPage(position, Integer.BYTES)) {
+			return get(position, Integer.BYTES).getInt();
+		}
+		counters.increment(LOGICALREADS).accumulate(BYTESREAD, Integer.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				return bypass().getInt(position);
+			} finally {
+				unlockBypass(position);
+			}
+		}
+		try {
+			return frame.buffer().getInt(getOffset(position));
+		} finally {
+			frame.unpin();
+		}
+	}
+	
+	@Override
+	public float getFloat(long position) {
+		return Float.intBitsToFloat(getInt(position));
+	}
+	
+	@Override
+	public long getLong(long position) {
+		if (crossesPage(position, Long.BYTES)) {
+			return get(position, Long.BYTES).getLong();
+		}
+		counters.increment(LOGICALREADS).accumulate(BYTESREAD, Long.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				return bypass().getLong(position);
+			} finally {
+				unlockBypass(position);
+			}
+		}
+		try {
+			return frame.buffer().getLong(getOffset(position));
+		} finally {
+			frame.unpin();
+		}
+	}
+	
+	@Override
+	public double getDouble(long position) {
+		return Double.longBitsToDouble(getLong(position));
+	}
+	
+	@Override
+	public ByteSpace put(long position, byte in) {
+		counters.increment(LOGICALWRITES).accumulate(BYTESWRITTEN, Byte.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				bypass().put(position, in);
+			} finally {
+				unlockBypass(position);
+			}
+			return this;
+		}
+		try {
+			frame.buffer().put(getOffset(position), in);
+			frame.dirty();
+		} finally {
+			frame.unpin();
+		}
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putShort(long position, short in) {
+		if (crossesPage(position, Short.BYTES)) {
+			return put(position, ByteBuffer.allocate(Short.BYTES).order(order).putShort(0, in));
+		}
+		counters.increment(LOGICALWRITES).accumulate(BYTESWRITTEN, Short.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				bypass().putShort(position, in);
+			} finally {
+				unlockBypass(position);
+			}
+			return this;
+		}
+		try {
+			frame.buffer().putShort(getOffset(position), in);
+			frame.dirty();
+		} finally {
+			frame.unpin();
+		}
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putChar(long position, char in) {
+		if (crossesPage(position, Character.BYTES)) {
+			return put(position, ByteBuffer.allocate(Character.BYTES).order(order).putChar(0, in));
+		}
+		counters.increment(LOGICALWRITES).accumulate(BYTESWRITTEN, Character.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				bypass().putChar(position, in);
+			} finally {
+				unlockBypass(position);
+			}
+			return this;
+		}
+		try {
+			frame.buffer().putChar(getOffset(position), in);
+			frame.dirty();
+		} finally {
+			frame.unpin();
+		}
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putInt(long position, int in) {
+		if (crossesPage(position, Integer.BYTES)) {
+			return put(position, ByteBuffer.allocate(Integer.BYTES).order(order).putInt(0, in));
+		}
+		counters.increment(LOGICALWRITES).accumulate(BYTESWRITTEN, Integer.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				bypass().putInt(position, in);
+			} finally {
+				unlockBypass(position);
+			}
+			return this;
+		}
+		try {
+			frame.buffer().putInt(getOffset(position), in);
+			frame.dirty();
+		} finally {
+			frame.unpin();
+		}
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putFloat(long position, float in) {
+		return putInt(position, Float.floatToRawIntBits(in));
+	}
+	
+	@Override
+	public ByteSpace putLong(long position, long in) {
+		if (crossesPage(position, Long.BYTES)) {
+			return put(position, ByteBuffer.allocate(Long.BYTES).order(order).putLong(0, in));
+		}
+		counters.increment(LOGICALWRITES).accumulate(BYTESWRITTEN, Long.BYTES);
+		Frame frame = pin(position);
+		if (frame == null) {
+			try {
+				bypass().putLong(position, in);
+			} finally {
+				unlockBypass(position);
+			}
+			return this;
+		}
+		try {
+			frame.buffer().putLong(getOffset(position), in);
+			frame.dirty();
+		} finally {
+			frame.unpin();
+		}
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putDouble(long position, double in) {
+		return putLong(position, Double.doubleToRawLongBits(in));
+	}
+	
+	@Override
+	public Counts counts() {
+		return counters.counts();
+	}
+	
+	@Override
+	public ByteOrder order() {
+		return order;
+	}
+	
+	/**
+	 * returns the page size
+	 * @return the page size
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+	
+	/**
+	 * returns the page shift
+	 * @return the page shift
+	 */
+	public int getPageShift() {
+		return pageShift;
+	}
+	
+	/**
+	 * returns the number of frames in the buffer pool
+	 * @return the number of frames
+	 */
+	public int getFrames() {
+		return frames.length;
+	}
+	
+	/**
+	 * sets the readahead window for chunked scans.
+	 * 
+	 * <p>When enabled, {@link #get(long, long, int)} loads up to <code>window</code> bytes
+	 * beyond the last returned chunk into the buffer pool in the background.
+	 * The window should be well below the pool size, or prefetched frames will evict each other.
+	 * Readahead is disabled by default</p>
+	 * 
+	 * @param window the readahead window in bytes, 0 to disable readahead
+	 * @return this space
+	 * @throws IllegalArgumentException
+	 * 		if window is negative
+	 */
+	public BufferPoolSpace readahead(long window) {
+		if (window < 0) {
+			throw new IllegalArgumentException("Illegal readahead window: " + window);
+		}
+		this.readahead = window;
+		return this;
+	}
+	
+	private final class Frame {
+		
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(pageSize).order(order);
+		// pin count, -1 if claimed for eviction or loading
+		private final AtomicInteger pins = new AtomicInteger();
+		private volatile long page = -1;
+		private volatile boolean referenced;
+		private volatile boolean dirty;
+		
+		ByteBuffer buffer() {
+			return buffer;
+		}
+		
+		ByteBuffer slice(int offset, int length) {
+			ByteBuffer result = buffer.duplicate();
+			result.limit(offset + length).position(offset);
+			return result;
+		}
+		
+		long page() {
+			return page;
+		}
+		
+		boolean pin(long expectedPage) {
+			while (true) {
+				int current = pins.get();
+				if (current < 0) {
+					return false;
+				}
+				if (pins.compareAndSet(current, current + 1)) {
+					break;
+				}
+			}
+			if (page != expectedPage) {
+				unpin();
+				return false;
+			}
+			if (!referenced) {
+				referenced = true;
+			}
+			return true;
+		}
+		
+		void unpin() {
+			pins.decrementAndGet();
+		}
+		
+		boolean claim() {
+			return pins.compareAndSet(0, -1);
+		}
+		
+		void release() {
+			pins.set(0);
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+		
+		synchronized void awaitRelease() {
+			boolean interrupted = false;
+			while (pins.get() < 0) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		boolean clearReference() {
+			boolean result = referenced;
+			referenced = false;
+			return result;
+		}
+		
+		boolean isDirty() {
+			return dirty;
+		}
+		
+		void dirty() {
+			if (!dirty) {
+				dirty = true;
+			}
+		}
+		
+		synchronized void writeBack() {
+			if (!dirty) {
+				return;
+			}
+			dirty = false;
+			ByteBuffer source = buffer.asReadOnlyBuffer();
+			source.clear();
+			counters.increment(PHYSICALWRITES);
+			try {
+				writePage(page, source);
+			} catch (IOException e) {
+				dirty = true;
+				throw new RuntimeException(e);
+			}
+		}
+		
+		void read(long newPage) {
+			ByteBuffer target = buffer.duplicate();
+			target.clear();
+			counters.increment(PHYSICALREADS);
+			try {
+				readPage(newPage, target);
+			} catch (IOException e) {
+				page = -1;
+				throw new RuntimeException(e);
+			}
+			while (target.hasRemaining()) {
+				target.put((byte) 0);
+			}
+			referenced = true;
+			page = newPage;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Byte Space using backing file with regular fileChannel IO and a buffer pool
+ * 
+ * <p> Implements a file space on top of regular file IO, caching file pages in a fixed number of
+ * direct memory frames. This gives explicit control over memory usage, as opposed to memory mapped IO.</p>
+ * 
+ * <p> Frames are always written back as a whole, so the file length grows in page size increments.</p>
+ * 
+ */
+public final class BufferedFileSpace extends BufferPoolSpace {
+	
+	private final FileChannel channel;
+	
+	private BufferedFileSpace(FileChannel channel, int pageShift, int frames) {
+		super(pageShift, frames);
+		this.channel = channel;
+	}
+	
+	/**
+	 * creates a ByteSpace backed by the given file, using a pool of 1024 64K frames
+	 * If the file does not exist, a sparse file will be created
+	 * 
+	 * @param path the file backing the ByteSpace
+	 * @return byte space
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	public static BufferedFileSpace of(Path path) throws IOException {
+		return of(path, 16, 1024);
+	}
+	
+	/**
+	 * creates a ByteSpace backed by the given file,
+	 * using a pool of <code>frames</code> frames with size <code>2^pageShift</code>
+	 * If the file does not exist, a sparse file will be created
+	 * 
+	 * @param path the file backing the ByteSpace
+	 * @param pageShift number of bits in the page shift
+	 * @param frames number of frames in the buffer pool
+	 * @return byte space
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 * @throws IllegalArgumentException
+	 * 		if pageShift is smaller than 9 or greater than 30, or frames is not positive
+	 */
+	public static BufferedFileSpace of(Path path, int pageShift, int frames) throws IOException {
+		return new BufferedFileSpace(channel(path), pageShift, frames);
+	}
+	
+	private static FileChannel channel(Path path) throws IOException {
+		if (Files.exists(path)) {
+			return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} else {
+			return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE);
+		}
+	}
+	
+	@Override
+	protected void readPage(long page, ByteBuffer buffer) throws IOException {
+		long position = page << getPageShift();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				return;
+			}
+		}
+	}
+	
+	@Override
+	protected void writePage(long page, ByteBuffer buffer) throws IOException {
+		long position = page << getPageShift();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * In addition to the super class behavior, 
+	 * this implementations calls force on the underlying FileChannel
+	 */
+	@Override
+	public BufferedFileSpace force() throws IOException {
+		super.force();
+		channel.force(true);
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * In addition to the super class behavior, 
+	 * this implementations closes the underlying FileChannel
+	 */
+	@Override
+	public void close() throws IOException {
+		super.close();
+		channel.close();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementation returns <code>Long.MAX_VALUE</code>,
+	 * but most file systems limit logical file length.
+	 */
+	@Override
+	public long capacity() {
+		return Long.MAX_VALUE;
+	}
+	
+	@Override
+	public BufferedFileSpace readahead(long window) {
+		super.readahead(window);
+		return this;
+	}
+}
@@ -2,25 +2,39 @@ package com.amplifino.obelix.space;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
+import java.util.Arrays;
 import java.util.Optional;
 
 /**
  * ByteSpace backed by ByteBuffer
  * 
- * This class wraps a byte buffer into a ByteSpace interface
+ * This class wraps a byte buffer into a ByteSpace interface,
+ * using the byte order of the buffer
  *
  */
 public final class ByteBufferSpace implements ByteSpace {
 	
 	private final ByteBuffer byteBuffer;
+	private final boolean atomic;
+	private final Object base;
+	private final long baseOffset;
+	private final ByteOrder order;
+	private final boolean swap;
 	
 	private ByteBufferSpace(ByteBuffer byteBuffer) {
 		this.byteBuffer = (ByteBuffer) byteBuffer.rewind();
+		this.order = byteBuffer.order();
+		this.swap = UnsafeAtomics.isSwapped(order);
+		this.atomic = UnsafeAtomics.isAvailable() && !byteBuffer.isReadOnly() && (byteBuffer.hasArray() || byteBuffer.isDirect());
+		this.base = atomic ? UnsafeAtomics.base(byteBuffer) : null;
+		this.baseOffset = atomic ? UnsafeAtomics.baseOffset(byteBuffer) : 0;
 	}
 	
 	/**
-	 * returns a ByteSpace wrapping the argument
+	 * returns a ByteSpace wrapping the argument.
+	 * Multi byte values use the byte order of the argument
 	 * 
 	 * @param byteBuffer the buffer to wrap
 	 * @return the ByteSpace wrapping the argument
@@ -58,7 +72,7 @@ public final class ByteBufferSpace implements ByteSpace {
 	public ByteBuffer get(long position, int length) {
 		int offset = offset(position , length);
 		//return ByteBuffer.wrap(getBytes(position, length));
-		return ((ByteBuffer) (byteBuffer.asReadOnlyBuffer().position(offset).limit(offset + length))).slice();
+		return ((ByteBuffer) (byteBuffer.asReadOnlyBuffer().position(offset).limit(offset + length))).slice().order(order);
 	}
 	
 	@Override
@@ -118,6 +132,48 @@ public final class ByteBufferSpace implements ByteSpace {
 		return byteBuffer.getDouble(offset(position, Double.BYTES));
 	}
 	
+	@Override
+	public ByteSpace getLongs(long position, long[] longs, int start, int length) {
+		int offset = offset(position, PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES));
+		((ByteBuffer) byteBuffer.duplicate().order(order).position(offset)).asLongBuffer().get(longs, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putLongs(long position, long[] longs, int start, int length) {
+		int offset = offset(position, PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES));
+		((ByteBuffer) byteBuffer.duplicate().order(order).position(offset)).asLongBuffer().put(longs, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace getInts(long position, int[] ints, int start, int length) {
+		int offset = offset(position, PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES));
+		((ByteBuffer) byteBuffer.duplicate().order(order).position(offset)).asIntBuffer().get(ints, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putInts(long position, int[] ints, int start, int length) {
+		int offset = offset(position, PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES));
+		((ByteBuffer) byteBuffer.duplicate().order(order).position(offset)).asIntBuffer().put(ints, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace getDoubles(long position, double[] doubles, int start, int length) {
+		int offset = offset(position, PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES));
+		((ByteBuffer) byteBuffer.duplicate().order(order).position(offset)).asDoubleBuffer().get(doubles, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putDoubles(long position, double[] doubles, int start, int length) {
+		int offset = offset(position, PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES));
+		((ByteBuffer) byteBuffer.duplicate().order(order).position(offset)).asDoubleBuffer().put(doubles, start, length);
+		return this;
+	}
+	
 	@Override
 	public ByteSpace put(long position, byte in) {
 		byteBuffer.put(offset(position, Byte.BYTES), in);
@@ -160,6 +216,135 @@ public final class ByteBufferSpace implements ByteSpace {
 		return this;
 	}
 	
+	@Override
+	public ByteSpace fill(long position, long length, byte value) {
+		if (length < 0 || length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		int offset = offset(position, (int) length);
+		int end = offset + (int) length;
+		if (byteBuffer.hasArray()) {
+			Arrays.fill(byteBuffer.array(), byteBuffer.arrayOffset() + offset, byteBuffer.arrayOffset() + end, value);
+			return this;
+		}
+		long word = Byte.toUnsignedLong(value) * 0x0101010101010101L;
+		for (; offset <= end - Long.BYTES ; offset += Long.BYTES) {
+			byteBuffer.putLong(offset, word);
+		}
+		for (; offset < end ; offset++) {
+			byteBuffer.put(offset, value);
+		}
+		return this;
+	}
+	
+	@Override
+	public int compare(long position, byte[] key, int start, int length) {
+		int offset = offset(position, PrimitiveArrays.byteLength(key.length, start, length, Byte.BYTES));
+		return ByteRanges.compare(byteBuffer, offset, key, start, length);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation compares the buffers directly if the other space is backed by a ByteBuffer,
+	 * and lets paged and wrapped spaces resolve their pages otherwise</p>
+	 */
+	@Override
+	public int mismatch(long position, ByteSpace other, long otherPosition, int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		if (other instanceof ByteBufferSpace) {
+			ByteBufferSpace otherSpace = (ByteBufferSpace) other;
+			return ByteRanges.mismatch(byteBuffer, offset(position, length), otherSpace.byteBuffer, otherSpace.offset(otherPosition, length), length);
+		}
+		if (other instanceof PagedSpace || other instanceof WrappedSpace) {
+			// these delegate to their pages without calling back with a paged or wrapped argument
+			return other.mismatch(otherPosition, this, position, length);
+		}
+		return ByteSpace.super.mismatch(position, other, otherPosition, length);
+	}
+	
+	private boolean isNative(int offset, int size) {
+		return atomic && UnsafeAtomics.isAligned(baseOffset + offset, size);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation is lock free for aligned addresses</p>
+	 */
+	@Override
+	public boolean compareAndSwapLong(long position, long expected, long update) {
+		int offset = offset(position, Long.BYTES);
+		if (isNative(offset, Long.BYTES)) {
+			return UnsafeAtomics.compareAndSwapLong(base, baseOffset + offset, expected, update, swap);
+		} else {
+			return ByteSpace.super.compareAndSwapLong(position, expected, update);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation is lock free for aligned addresses</p>
+	 */
+	@Override
+	public boolean compareAndSwapInt(long position, int expected, int update) {
+		int offset = offset(position, Integer.BYTES);
+		if (isNative(offset, Integer.BYTES)) {
+			return UnsafeAtomics.compareAndSwapInt(base, baseOffset + offset, expected, update, swap);
+		} else {
+			return ByteSpace.super.compareAndSwapInt(position, expected, update);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation is lock free for aligned addresses</p>
+	 */
+	@Override
+	public long getAndAddLong(long position, long delta) {
+		int offset = offset(position, Long.BYTES);
+		if (isNative(offset, Long.BYTES)) {
+			return UnsafeAtomics.getAndAddLong(base, baseOffset + offset, delta, swap);
+		} else {
+			return ByteSpace.super.getAndAddLong(position, delta);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation is lock free for aligned addresses</p>
+	 */
+	@Override
+	public long getLongVolatile(long position) {
+		int offset = offset(position, Long.BYTES);
+		if (isNative(offset, Long.BYTES)) {
+			return UnsafeAtomics.getLongVolatile(base, baseOffset + offset, swap);
+		} else {
+			return ByteSpace.super.getLongVolatile(position);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation is lock free for aligned addresses</p>
+	 */
+	@Override
+	public ByteSpace putLongOrdered(long position, long in) {
+		int offset = offset(position, Long.BYTES);
+		if (isNative(offset, Long.BYTES)) {
+			UnsafeAtomics.putLongOrdered(base, baseOffset + offset, in, swap);
+			return this;
+		} else {
+			return ByteSpace.super.putLongOrdered(position, in);
+		}
+	}
+	
 	/**
 	 * 	 {@inheritDoc}
 	 * 
@@ -196,4 +381,25 @@ public final class ByteBufferSpace implements ByteSpace {
 		return byteBuffer.capacity();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation returns a ByteBufferSpace on a slice of the buffer if the range fits in the buffer,
+	 * so accesses through the slice need no translation</p>
+	 */
+	@Override
+	public ByteSpace slice(long shift, long capacity) {
+		if (shift < 0 || capacity < 0 || shift + capacity > capacity()) {
+			return ByteSpace.super.slice(shift, capacity);
+		}
+		ByteBuffer buffer = byteBuffer.duplicate();
+		buffer.position((int) shift).limit((int) (shift + capacity));
+		return new ByteBufferSpace(buffer.slice().order(order));
+	}
+	
+	@Override
+	public ByteOrder order() {
+		return order;
+	}
+
 }
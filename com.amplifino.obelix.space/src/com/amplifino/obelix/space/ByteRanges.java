@@ -0,0 +1,140 @@
+package com.amplifino.obelix.space;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Comparison and hashing of byte ranges in place
+ * 
+ * <p> Ranges are compared a long at a time where possible, without copying bytes out of the space.
+ * The hash is a 64 bit variant of MurmurHash3, reading the range as little endian words
+ * so the result does not depend on the byte order or the page size of the space.</p>
+ * 
+ */
+final class ByteRanges {
+	
+	static final long SEED = 0x9E3779B97F4A7C15L;
+	private static final long C1 = 0x87C37B91114253D5L;
+	private static final long C2 = 0x4CF5AD432745937FL;
+	
+	private ByteRanges() {
+	}
+	
+	static int compare(ByteSpace space, long position, byte[] key, int start, int length) {
+		PrimitiveArrays.byteLength(key.length, start, length, Byte.BYTES);
+		for (int i = 0 ; i < length ; i++) {
+			int result = Byte.toUnsignedInt(space.get(position + i)) - Byte.toUnsignedInt(key[start + i]);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+	
+	static int compare(ByteBuffer buffer, int offset, byte[] key, int start, int length) {
+		for (int i = 0 ; i < length ; i++) {
+			int result = Byte.toUnsignedInt(buffer.get(offset + i)) - Byte.toUnsignedInt(key[start + i]);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+	
+	static int mismatch(ByteSpace space, long position, ByteSpace other, long otherPosition, int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		boolean swap = space.order() != other.order();
+		int i = 0;
+		for (; i <= length - Long.BYTES ; i += Long.BYTES) {
+			long word = space.getLong(position + i);
+			long otherWord = other.getLong(otherPosition + i);
+			if (word != (swap ? Long.reverseBytes(otherWord) : otherWord)) {
+				return i + mismatch(word, swap ? Long.reverseBytes(otherWord) : otherWord, space.order());
+			}
+		}
+		for (; i < length ; i++) {
+			if (space.get(position + i) != other.get(otherPosition + i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	static int mismatch(ByteBuffer buffer, int offset, ByteBuffer other, int otherOffset, int length) {
+		boolean swap = buffer.order() != other.order();
+		int i = 0;
+		for (; i <= length - Long.BYTES ; i += Long.BYTES) {
+			long word = buffer.getLong(offset + i);
+			long otherWord = other.getLong(otherOffset + i);
+			if (word != (swap ? Long.reverseBytes(otherWord) : otherWord)) {
+				return i + mismatch(word, swap ? Long.reverseBytes(otherWord) : otherWord, buffer.order());
+			}
+		}
+		for (; i < length ; i++) {
+			if (buffer.get(offset + i) != other.get(otherOffset + i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * returns the index of the first different byte in two different words read in the given order
+	 */
+	private static int mismatch(long word, long otherWord, ByteOrder order) {
+		long difference = word ^ otherWord;
+		int bits = order == ByteOrder.BIG_ENDIAN ? Long.numberOfLeadingZeros(difference) : Long.numberOfTrailingZeros(difference);
+		return bits / Byte.SIZE;
+	}
+	
+	static long hash64(ByteSpace space, long position, int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		long hash = SEED;
+		int i = 0;
+		for (; i <= length - Long.BYTES ; i += Long.BYTES) {
+			hash = mix(hash, word(space.getLong(position + i), space.order()));
+		}
+		return finish(hash, tail(space, position + i, length - i), length);
+	}
+	
+	/**
+	 * converts a word read in the given order to little endian
+	 */
+	static long word(long value, ByteOrder order) {
+		return order == ByteOrder.LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+	}
+	
+	/**
+	 * reads the last <code>length</code> bytes of a range, with length less than 8, as a little endian word
+	 */
+	static long tail(ByteSpace space, long position, int length) {
+		long word = 0;
+		for (int i = 0 ; i < length ; i++) {
+			word |= Byte.toUnsignedLong(space.get(position + i)) << (i * Byte.SIZE);
+		}
+		return word;
+	}
+	
+	static long mix(long hash, long word) {
+		hash ^= scramble(word);
+		return Long.rotateLeft(hash, 27) * 5 + 0x52DCE729;
+	}
+	
+	static long finish(long hash, long tail, int length) {
+		hash ^= scramble(tail);
+		hash ^= length;
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		return hash ^ (hash >>> 33);
+	}
+	
+	private static long scramble(long word) {
+		return Long.rotateLeft(word * C1, 31) * C2;
+	}
+}
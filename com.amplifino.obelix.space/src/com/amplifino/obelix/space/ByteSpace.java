@@ -2,6 +2,8 @@ package com.amplifino.obelix.space;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.stream.LongStream;
@@ -23,6 +25,8 @@ import com.amplifino.counters.Counts;
  * 
  * <p>The API is inspired on java.nio.ByteBuffer, only retaining the absolute get and put variants.</p>
  * 
+ * <p>Multi byte values are encoded in the byte order returned by {@link #order()}, big endian unless documented otherwise.</p>
+ * 
  * <p>ByteSpaces should be thread safe. If multiple threads write to the same area the outcome is undefined,
  * but should not cause any side effect on other areas</p>
  * 
@@ -239,7 +243,7 @@ public interface ByteSpace extends AutoCloseable {
      * Absolute <i>get</i> method.
      *
      * <p> Reads two bytes at the given address in this space,
-     * composing them into a short value using big endian byte order,
+     * composing them into a short value using the byte order of this space,
      * </p> 
      * 
      * @param  position
@@ -258,7 +262,7 @@ public interface ByteSpace extends AutoCloseable {
      * Absolute <i>get</i> method.
      *
      * <p> Reads two bytes at the given address in this space,
-     * composing them into a character value using big endian byte order,
+     * composing them into a character value using the byte order of this space,
      * </p> 
      * 
      * @param  position
@@ -277,7 +281,7 @@ public interface ByteSpace extends AutoCloseable {
      * Absolute <i>get</i> method.
      *
      * <p> Reads four bytes at the given address in this space,
-     * composing them into a integer value using big endian byte order,
+     * composing them into a integer value using the byte order of this space,
      * </p> 
      * 
      * @param  position
@@ -296,7 +300,7 @@ public interface ByteSpace extends AutoCloseable {
      * Absolute <i>get</i> method.
      *
      * <p> Reads eight bytes at the given address in this space,
-     * composing them into a long value using big endian byte order,
+     * composing them into a long value using the byte order of this space,
      * </p> 
      * 
      * @param  position
@@ -315,7 +319,7 @@ public interface ByteSpace extends AutoCloseable {
      * Absolute <i>get</i> method.
      *
      * <p> Reads four bytes at the given address in this space,
-     * composing them into a float value using big endian byte order,
+     * composing them into a float value using the byte order of this space,
      * </p> 
      * 
      * @param  position
@@ -334,7 +338,7 @@ public interface ByteSpace extends AutoCloseable {
      * Absolute <i>get</i> method.
      *
      * <p> Reads eight bytes at the given address in this space,
-     * composing them into a double value using big endian byte order,
+     * composing them into a double value using the byte order of this space,
      * </p> 
      * 
      * @param  position
@@ -483,8 +487,8 @@ public interface ByteSpace extends AutoCloseable {
 	 * 
      * Absolute <i>put</i> method.
      *
-     * <p> Writes two bytes containing the given short value, in big endian
-     * byte order, at the given address in this space.</p>
+     * <p> Writes two bytes containing the given short value, in the byte order
+     * of this space, at the given address in this space.</p>
      * 
      * @param  position
      * 		   The address to update
@@ -504,8 +508,8 @@ public interface ByteSpace extends AutoCloseable {
 	 * 
      * Absolute <i>put</i> method.
      *
-     * <p> Writes two bytes containing the given character value, in big endian
-     * byte order, at the given address in this space.</p>
+     * <p> Writes two bytes containing the given character value, in the byte order
+     * of this space, at the given address in this space.</p>
      * 
      * @param  position
      * 		   The address to update
@@ -525,8 +529,8 @@ public interface ByteSpace extends AutoCloseable {
 	 * 
      * Absolute <i>put</i> method.
      *
-     * <p> Writes four bytes containing the given integer value, in big endian
-     * byte order, at the given address in this space.</p>
+     * <p> Writes four bytes containing the given integer value, in the byte order
+     * of this space, at the given address in this space.</p>
      * 
      * @param  position
      * 		   The address to update
@@ -546,8 +550,8 @@ public interface ByteSpace extends AutoCloseable {
 	 * 
      * Absolute <i>put</i> method.
      *
-     * <p> Writes eight bytes containing the given long value, in big endian
-     * byte order, at the given address in this space.</p>
+     * <p> Writes eight bytes containing the given long value, in the byte order
+     * of this space, at the given address in this space.</p>
      * 
      * @param  position
      * 		   The address to update
@@ -567,8 +571,8 @@ public interface ByteSpace extends AutoCloseable {
 	 * 
      * Absolute <i>put</i> method.
      *
-     * <p> Writes four bytes containing the given float value, in big endian
-     * byte order, at the given address in this space.</p>
+     * <p> Writes four bytes containing the given float value, in the byte order
+     * of this space, at the given address in this space.</p>
      * 
      * @param  position
      * 		   The address to update
@@ -588,8 +592,8 @@ public interface ByteSpace extends AutoCloseable {
 	 * 
      * Absolute <i>put</i> method.
      *
-     * <p> Writes eight bytes containing the given short value, in big endian
-     * byte order, at the given address in this space.</p>
+     * <p> Writes eight bytes containing the given short value, in the byte order
+     * of this space, at the given address in this space.</p>
      * 
      * @param  position
      * 		   The address to update
@@ -605,6 +609,558 @@ public interface ByteSpace extends AutoCloseable {
 	 */
 	ByteSpace putDouble(long position, double in);
 	
+	/**
+	 * 
+     * Absolute bulk <i>getLongs</i> method.
+     *
+     * <p> This method reads <code>length</code> long values from this space,
+     * starting at the given address, into the given array, starting at the given offset in the array.
+     * Values are decoded as by {@link #getLong(long)}.</p>
+     * 
+     * <p> The default implementation reads all bytes with a single bulk get.</p>
+     * 
+     * @param  position
+     * 		   The address of the first value
+     * 
+     * @param  longs
+     *         The array into which values are to be written
+     *
+     * @param  start
+     *         The offset within the array of the first value to be written
+     *
+     * @param  length
+     *         The number of values to read.
+     *         must be non-negative and no larger than <code>longs.length - start</code>
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace getLongs(long position, long[] longs, int start, int length) {
+		get(position, PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES)).order(order()).asLongBuffer().get(longs, start, length);
+		return this;
+	}
+	
+	/**
+	 * 
+     * Absolute bulk <i>putLongs</i> method.
+     *
+     * <p> This method writes <code>length</code> long values from the given array,
+     * starting at the given offset in the array, into this space at the given address.
+     * Values are encoded as by {@link #putLong(long, long)}.</p>
+     * 
+     * <p> The default implementation writes all bytes with a single bulk put.</p>
+     * 
+     * @param  position
+     * 		   The address of the first value
+     * 
+     * @param  longs
+     *         The array from which values are to be read
+     *
+     * @param  start
+     *         The offset within the array of the first value to be read
+     *
+     * @param  length
+     *         The number of values to write.
+     *         must be non-negative and no larger than <code>longs.length - start</code>
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace putLongs(long position, long[] longs, int start, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES));
+		buffer.order(order()).asLongBuffer().put(longs, start, length);
+		return put(position, buffer);
+	}
+	
+	/**
+	 * 
+     * Absolute bulk <i>getInts</i> method.
+     *
+     * <p> This method reads <code>length</code> int values from this space,
+     * starting at the given address, into the given array, starting at the given offset in the array.
+     * Values are decoded as by {@link #getInt(long)}.</p>
+     * 
+     * <p> The default implementation reads all bytes with a single bulk get.</p>
+     * 
+     * @param  position
+     * 		   The address of the first value
+     * 
+     * @param  ints
+     *         The array into which values are to be written
+     *
+     * @param  start
+     *         The offset within the array of the first value to be written
+     *
+     * @param  length
+     *         The number of values to read.
+     *         must be non-negative and no larger than <code>ints.length - start</code>
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace getInts(long position, int[] ints, int start, int length) {
+		get(position, PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES)).order(order()).asIntBuffer().get(ints, start, length);
+		return this;
+	}
+	
+	/**
+	 * 
+     * Absolute bulk <i>putInts</i> method.
+     *
+     * <p> This method writes <code>length</code> int values from the given array,
+     * starting at the given offset in the array, into this space at the given address.
+     * Values are encoded as by {@link #putInt(long, int)}.</p>
+     * 
+     * <p> The default implementation writes all bytes with a single bulk put.</p>
+     * 
+     * @param  position
+     * 		   The address of the first value
+     * 
+     * @param  ints
+     *         The array from which values are to be read
+     *
+     * @param  start
+     *         The offset within the array of the first value to be read
+     *
+     * @param  length
+     *         The number of values to write.
+     *         must be non-negative and no larger than <code>ints.length - start</code>
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace putInts(long position, int[] ints, int start, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES));
+		buffer.order(order()).asIntBuffer().put(ints, start, length);
+		return put(position, buffer);
+	}
+	
+	/**
+	 * 
+     * Absolute bulk <i>getDoubles</i> method.
+     *
+     * <p> This method reads <code>length</code> double values from this space,
+     * starting at the given address, into the given array, starting at the given offset in the array.
+     * Values are decoded as by {@link #getDouble(long)}.</p>
+     * 
+     * <p> The default implementation reads all bytes with a single bulk get.</p>
+     * 
+     * @param  position
+     * 		   The address of the first value
+     * 
+     * @param  doubles
+     *         The array into which values are to be written
+     *
+     * @param  start
+     *         The offset within the array of the first value to be written
+     *
+     * @param  length
+     *         The number of values to read.
+     *         must be non-negative and no larger than <code>doubles.length - start</code>
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace getDoubles(long position, double[] doubles, int start, int length) {
+		get(position, PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES)).order(order()).asDoubleBuffer().get(doubles, start, length);
+		return this;
+	}
+	
+	/**
+	 * 
+     * Absolute bulk <i>putDoubles</i> method.
+     *
+     * <p> This method writes <code>length</code> double values from the given array,
+     * starting at the given offset in the array, into this space at the given address.
+     * Values are encoded as by {@link #putDouble(long, double)}.</p>
+     * 
+     * <p> The default implementation writes all bytes with a single bulk put.</p>
+     * 
+     * @param  position
+     * 		   The address of the first value
+     * 
+     * @param  doubles
+     *         The array from which values are to be read
+     *
+     * @param  start
+     *         The offset within the array of the first value to be read
+     *
+     * @param  length
+     *         The number of values to write.
+     *         must be non-negative and no larger than <code>doubles.length - start</code>
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace putDoubles(long position, double[] doubles, int start, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES));
+		buffer.order(order()).asDoubleBuffer().put(doubles, start, length);
+		return put(position, buffer);
+	}
+	
+	/**
+	 * 
+     * Absolute bulk <i>fill</i> method.
+     *
+     * <p> Writes <code>value</code> to <code>length</code> bytes starting at the given address.</p>
+     * 
+     * <p> The default implementation writes the range in chunks of 64K.</p>
+     * 
+     * @param  position
+     * 		   The address of the first byte
+     * 
+     * @param  length
+     *         The number of bytes to write, must be non-negative
+     *
+     * @param  value
+     *         The byte value to write
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace fill(long position, long length, byte value) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		byte[] bytes = new byte[(int) Math.min(length, 1 << 16)];
+		if (value != 0) {
+			Arrays.fill(bytes, value);
+		}
+		for (long done = 0 ; done < length ; done += bytes.length) {
+			put(position + done, bytes, 0, (int) Math.min(bytes.length, length - done));
+		}
+		return this;
+	}
+	
+	/**
+	 * 
+     * Absolute <i>release</i> method.
+     *
+     * <p> Releases <code>length</code> bytes starting at the given address.
+     * The range reads as zeros afterwards, but implementations may free the storage backing the range,
+     * by dropping whole pages or truncating files, instead of writing zeros.
+     * Concurrent access to a range being released has undefined results.</p>
+     * 
+     * <p> The default implementation fills the range with zeros.</p>
+     * 
+     * @param  position
+     * 		   The address of the first byte
+     * 
+     * @param  length
+     *         The number of bytes to release, must be non-negative
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace release(long position, long length) {
+		return fill(position, length, (byte) 0);
+	}
+	
+	/**
+	 * 
+     * Absolute <i>compare</i> method.
+     *
+     * <p> Compares <code>length</code> bytes starting at the given address
+     * with <code>length</code> bytes of the given array, starting at the given offset in the array.
+     * Bytes are compared lexicographically as unsigned values, without copying them out of this space.</p>
+     * 
+     * <p> The default implementation compares byte by byte using {@link #get(long)}.</p>
+     * 
+     * @param  position
+     * 		   The address of the first byte
+     * 
+     * @param  key
+     *         The array to compare with
+     *
+     * @param  start
+     *         The offset within the array of the first byte to compare
+     *
+     * @param  length
+     *         The number of bytes to compare.
+     *         must be non-negative and no larger than <code>key.length - start</code>
+     *
+     * @return  zero if the ranges are equal, a negative value if the range in this space is smaller,
+     *          and a positive value otherwise 
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default int compare(long position, byte[] key, int start, int length) {
+		return ByteRanges.compare(this, position, key, start, length);
+	}
+	
+	/**
+	 * 
+     * Absolute <i>mismatch</i> method.
+     *
+     * <p> Finds the first byte that differs between <code>length</code> bytes starting at the given address
+     * and <code>length</code> bytes starting at <code>otherPosition</code> in <code>other</code>.</p>
+     * 
+     * <p> The default implementation compares eight bytes at a time using {@link #getLong(long)}.</p>
+     * 
+     * @param  position
+     * 		   The address of the first byte
+     * 
+     * @param  other
+     *         The space to compare with, may be this space
+     *
+     * @param  otherPosition
+     *         The address of the first byte in the other space
+     *
+     * @param  length
+     *         The number of bytes to compare, must be non-negative
+     *
+     * @return  the index relative to the start of the ranges of the first different byte, 
+     *          or -1 if the ranges are equal
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default int mismatch(long position, ByteSpace other, long otherPosition, int length) {
+		return ByteRanges.mismatch(this, position, other, otherPosition, length);
+	}
+	
+	/**
+	 * 
+     * Absolute <i>hash</i> method.
+     *
+     * <p> Returns a 64 bit hash of <code>length</code> bytes starting at the given address,
+     * without copying them out of this space.
+     * The hash only depends on the bytes in the range, 
+     * so equal ranges have equal hashes in all spaces, regardless of their byte order or page size.</p>
+     * 
+     * <p> The default implementation reads eight bytes at a time using {@link #getLong(long)}.</p>
+     * 
+     * @param  position
+     * 		   The address of the first byte
+     * 
+     * @param  length
+     *         The number of bytes to hash, must be non-negative
+     *
+     * @return  the hash
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default long hash64(long position, int length) {
+		return ByteRanges.hash64(this, position, length);
+	}
+	
+	/**
+	 * 
+     * Atomic <i>compare and swap</i> method.
+     *
+     * <p> Atomically sets the eight bytes at the given address to <code>update</code>,
+     * if they currently hold <code>expected</code>.</p>
+     * 
+     * <p> Memory backed implementations perform this operation lock free if the address is aligned on an eight byte boundary.
+     * The default implementation synchronizes on this space, 
+     * and is therefore only atomic with respect to other atomic operations on this space.</p>
+     * 
+     * @param  position
+     * 		   The address to update
+     * 
+     * @param  expected
+     *         The expected long value
+     *
+     * @param  update
+     *         The new long value
+     *
+     * @return  true if successful, false if the current value was not equal to the expected value
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default boolean compareAndSwapLong(long position, long expected, long update) {
+		synchronized (this) {
+			if (getLong(position) != expected) {
+				return false;
+			}
+			putLong(position, update);
+			return true;
+		}
+	}
+	
+	/**
+	 * 
+     * Atomic <i>compare and swap</i> method.
+     *
+     * <p> Atomically sets the four bytes at the given address to <code>update</code>,
+     * if they currently hold <code>expected</code>.</p>
+     * 
+     * <p> See {@link #compareAndSwapLong(long, long, long)} for the atomicity guarantees.</p>
+     * 
+     * @param  position
+     * 		   The address to update
+     * 
+     * @param  expected
+     *         The expected integer value
+     *
+     * @param  update
+     *         The new integer value
+     *
+     * @return  true if successful, false if the current value was not equal to the expected value
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default boolean compareAndSwapInt(long position, int expected, int update) {
+		synchronized (this) {
+			if (getInt(position) != expected) {
+				return false;
+			}
+			putInt(position, update);
+			return true;
+		}
+	}
+	
+	/**
+	 * 
+     * Atomic <i>fetch and add</i> method.
+     *
+     * <p> Atomically adds <code>delta</code> to the long value at the given address.</p>
+     * 
+     * <p> See {@link #compareAndSwapLong(long, long, long)} for the atomicity guarantees.</p>
+     * 
+     * @param  position
+     * 		   The address to update
+     * 
+     * @param  delta
+     *         The value to add
+     *
+     * @return  The previous value
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default long getAndAddLong(long position, long delta) {
+		synchronized (this) {
+			long result = getLong(position);
+			putLong(position, result + delta);
+			return result;
+		}
+	}
+	
+	/**
+	 * 
+     * Absolute <i>get</i> method with volatile semantics.
+     *
+     * <p> Reads the long value at the given address, 
+     * with the memory visibility effects of a volatile read.</p>
+     * 
+     * <p> See {@link #compareAndSwapLong(long, long, long)} for the atomicity guarantees.</p>
+     * 
+     * @param  position
+     * 		   The address from which bytes are copied
+     *       
+     * @return  The long value
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+     *          
+	 */
+	default long getLongVolatile(long position) {
+		synchronized (this) {
+			return getLong(position);
+		}
+	}
+	
+	/**
+	 * 
+     * Absolute <i>put</i> method with ordered semantics.
+     *
+     * <p> Writes the long value at the given address. 
+     * The write is not reordered with preceding writes, but may be delayed.
+     * This is the cheaper counterpart of a volatile write, 
+     * typically used to publish a value to readers using {@link #getLongVolatile(long)}</p>
+     * 
+     * <p> See {@link #compareAndSwapLong(long, long, long)} for the atomicity guarantees.</p>
+     * 
+     * @param  position
+     * 		   The address to update
+     * 
+     * @param  in
+     *         The long value
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold
+	 * 
+	 */
+	default ByteSpace putLongOrdered(long position, long in) {
+		synchronized (this) {
+			return putLong(position, in);
+		}
+	}
+	
+	/**
+	 * 
+     * Bulk <i>transfer</i> method.
+     *
+     * <p> Copies <code>length</code> bytes starting at <code>position</code> in this space
+     * to <code>target</code>, starting at <code>targetPosition</code>.</p>
+     * 
+     * <p> If both spaces are backed by a file channel, the copy is delegated to the operating system.
+     * Otherwise the range is copied in parallel. 
+     * Ranges known to be holes in both spaces, such as missing page files or regions beyond the end of file,
+     * are skipped without reading. Zero ranges are not written when the target already contains zeros,
+     * so sparse targets stay sparse</p>
+     * 
+     * @param  position
+     * 		   The address from which bytes are copied
+     * 
+     * @param  length
+     *         The number of bytes to copy
+     *
+     * @param  target
+     *         The space to which bytes are copied
+     *
+     * @param  targetPosition
+     *         The address in the target space to which bytes are copied
+     *
+     * @return  This space
+     *
+     * @throws  IllegalArgumentException
+     *          If the preconditions on the parameters do not hold, 
+     *          or the ranges overlap when target is this space
+	 * 
+	 */
+	default ByteSpace transferTo(long position, long length, ByteSpace target, long targetPosition) {
+		SpaceTransfer.transfer(this, position, length, target, targetPosition);
+		return this;
+	}
+	
 	/**
 	 * 
 	 * Shift space
@@ -617,7 +1173,7 @@ public interface ByteSpace extends AutoCloseable {
 	 * @return the shifted space
 	 */
 	default ByteSpace shift(long value) {
-		return value == 0 ? this : new ShiftedSpace(this, value);
+		return value == 0 ? this : new SpaceView(this, value, SpaceView.UNLIMITED);
 	}
 	
 	/**
@@ -639,7 +1195,7 @@ public interface ByteSpace extends AutoCloseable {
 		if (Long.compareUnsigned(capacity(), newCapacity) < 0) {
 			throw new IllegalArgumentException();
 		}
-		return capacity() == newCapacity ? this : new LimitedSpace(this, newCapacity);
+		return capacity() == newCapacity ? this : new SpaceView(this, 0, newCapacity);
 	}
 	
 	/**
@@ -647,7 +1203,8 @@ public interface ByteSpace extends AutoCloseable {
 	 * Slice space
 	 * 
 	 * <p>This method returns a new ByteSpace, backed by this space, whose addresses are shifted and limited by the arguments.
-	 * </p>
+	 * Shifting, limiting or slicing the returned space again does not stack views,
+	 * but returns a single view on this space.</p>
 	 * 
 	 * @param shift amount to shift
 	 * 
@@ -656,7 +1213,39 @@ public interface ByteSpace extends AutoCloseable {
 	 * @return the sliced space
 	 */
 	default ByteSpace slice(long shift, long capacity) {
-		return new ShiftedLimitedSpace(this, shift, capacity);
+		return new SpaceView(this, shift, capacity);
+	}
+	
+	/**
+	 * 
+	 * Snapshot space
+	 * 
+	 * <p>This method returns a read only, point-in-time view of this space.
+	 * Writes to this space after the call are not visible in the snapshot, and writers are not blocked by snapshot readers.
+	 * The snapshot should be closed when no longer needed, to release the resources it holds.
+	 * Closing the snapshot does not close this space.</p>
+	 * 
+	 * @return the snapshot
+	 * 
+	 * @throws UnsupportedOperationException
+	 * 			if this space does not support snapshots
+	 */
+	default ByteSpace snapshot() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * 
+	 * Byte order
+	 * 
+	 * <p>Returns the byte order used to encode multi byte values.
+	 * ByteBuffers returned by {@link #get(long, int)} use the same order.
+	 * The byte order is not stored in persistent spaces, so a space must always be opened with the same order.</p>
+	 * 
+	 * @return the byte order, the default implementation returns big endian
+	 */
+	default ByteOrder order() {
+		return ByteOrder.BIG_ENDIAN;
 	}
 	
 	/**
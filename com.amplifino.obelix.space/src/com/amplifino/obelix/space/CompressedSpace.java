@@ -0,0 +1,171 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Byte Space compressing pages into a backing space
+ * 
+ * <p> Hot pages are kept decompressed in a buffer pool, 
+ * cold pages are stored compressed in the backing space.
+ * The backing space starts with an 8 byte allocation mark, followed by a page directory with an entry per page,
+ * holding the position, compressed length and allocated length of the compressed page.
+ * Compressed pages are allocated after the directory.
+ * A page is rewritten in place if it still fits its allocation, otherwise it is moved to a new allocation.
+ * Allocations are never reused, so frequently modified spaces grow over time.
+ * Pages containing only zeros are not stored.</p>
+ * 
+ * <p> The number of pages, the page size and the codec are not stored in the backing space,
+ * so a backing space must always be opened with the same parameters.</p>
+ * 
+ */
+public final class CompressedSpace extends BufferPoolSpace {
+	
+	private static final int HEADERBYTES = Long.BYTES;
+	private static final int ENTRYBYTES = 2 * Long.BYTES;
+	
+	private final ByteSpace backing;
+	private final PageCodec codec;
+	private final long pages;
+	private final long dataStart;
+	private final Object allocationLock = new Object();
+	
+	private CompressedSpace(ByteSpace backing, long pages, int pageShift, int frames, PageCodec codec) {
+		super(pageShift, frames);
+		if (pages <= 0 || pages > (Long.MAX_VALUE >>> pageShift)) {
+			throw new IllegalArgumentException("Illegal page count: " + pages);
+		}
+		this.backing = backing;
+		this.codec = codec;
+		this.pages = pages;
+		this.dataStart = HEADERBYTES + pages * ENTRYBYTES;
+	}
+	
+	/**
+	 * creates a ByteSpace of <code>pages</code> 64K pages compressed into the backing space,
+	 * using the deflate codec and a pool of 256 frames
+	 * 
+	 * @param backing the space storing the compressed pages
+	 * @param pages the number of pages
+	 * @return the compressed space
+	 */
+	public static CompressedSpace on(ByteSpace backing, long pages) {
+		return on(backing, pages, 16, 256, PageCodec.deflate());
+	}
+	
+	/**
+	 * creates a ByteSpace of <code>pages</code> pages compressed into the backing space
+	 * 
+	 * @param backing the space storing the compressed pages
+	 * @param pages the number of pages
+	 * @param pageShift the page shift
+	 * @param frames the number of decompressed pages kept in memory
+	 * @param codec the compression codec
+	 * @return the compressed space
+	 * @throws IllegalArgumentException
+	 * 		if pageShift is smaller than 9 or greater than 30, or frames or pages is not positive
+	 */
+	public static CompressedSpace on(ByteSpace backing, long pages, int pageShift, int frames, PageCodec codec) {
+		return new CompressedSpace(backing, pages, pageShift, frames, codec);
+	}
+	
+	private long entry(long page) {
+		if (page < 0 || page >= pages) {
+			throw new IllegalArgumentException("Invalid page: " + page);
+		}
+		return HEADERBYTES + page * ENTRYBYTES;
+	}
+	
+	@Override
+	protected void readPage(long page, ByteBuffer buffer) throws IOException {
+		long entry = entry(page);
+		int length = backing.getInt(entry + Long.BYTES);
+		if (length == 0) {
+			return;
+		}
+		byte[] bytes = new byte[buffer.remaining()];
+		codec.decompress(backing.getBytes(backing.getLong(entry), length), bytes);
+		buffer.put(bytes);
+	}
+	
+	@Override
+	protected void writePage(long page, ByteBuffer buffer) throws IOException {
+		long entry = entry(page);
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		byte[] compressed = isZero(bytes) ? new byte[0] : codec.compress(bytes);
+		synchronized (allocationLock) {
+			long position = backing.getLong(entry);
+			int allocated = backing.getInt(entry + Long.BYTES + Integer.BYTES);
+			if (compressed.length > allocated) {
+				position = allocate(compressed.length);
+				allocated = compressed.length;
+			}
+			backing.put(position, compressed);
+			backing.putLong(entry, position);
+			backing.putInt(entry + Long.BYTES, compressed.length);
+			backing.putInt(entry + Long.BYTES + Integer.BYTES, allocated);
+		}
+	}
+	
+	private long allocate(int length) {
+		long position = Math.max(backing.getLong(0), dataStart);
+		backing.putLong(0, position + length);
+		return position;
+	}
+	
+	private static boolean isZero(byte[] bytes) {
+		for (byte b : bytes) {
+			if (b != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * returns the number of bytes used in the backing space, including the page directory
+	 * @return the footprint in bytes
+	 */
+	public long footprint() {
+		synchronized (allocationLock) {
+			return Math.max(backing.getLong(0), dataStart);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * In addition to the super class behavior, 
+	 * this implementations calls force on the backing space
+	 */
+	@Override
+	public CompressedSpace force() throws IOException {
+		super.force();
+		backing.force();
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * In addition to the super class behavior, 
+	 * this implementations closes the backing space
+	 */
+	@Override
+	public void close() throws IOException {
+		super.close();
+		backing.close();
+	}
+	
+	@Override
+	public long capacity() {
+		return pages << getPageShift();
+	}
+	
+	@Override
+	public CompressedSpace readahead(long window) {
+		super.readahead(window);
+		return this;
+	}
+}
@@ -0,0 +1,55 @@
+package com.amplifino.obelix.space;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+final class DeflateCodec implements PageCodec {
+	
+	private final int level;
+	
+	DeflateCodec(int level) {
+		this.level = level;
+	}
+	
+	@Override
+	public byte[] compress(byte[] page) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(page);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(page.length / 4);
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	@Override
+	public void decompress(byte[] compressed, byte[] page) {
+		// nowrap inflater needs an extra dummy byte
+		byte[] input = new byte[compressed.length + 1];
+		System.arraycopy(compressed, 0, input, 0, compressed.length);
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(input);
+			int length = 0;
+			while (length < page.length && !inflater.finished()) {
+				int count = inflater.inflate(page, length, page.length - length);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IllegalStateException("Truncated page");
+				}
+				length += count;
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -1,7 +1,20 @@
 package com.amplifino.obelix.space;
 
 import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 
 /**
@@ -12,28 +25,59 @@ import java.util.function.BiFunction;
  * To match with most common operating system and file systems limits the default factory methods will
  * allocate space in chunks of 8TB sparse files, requiring 1M files to map the whole 64bit address space. 
  * </p>
+ * 
+ * <p> The default generator creates pages with the byte order of this space.
+ * Custom generators must create pages with the byte order of this space.</p>
  *
+ * <p> Every page keeps its file open. To bound the number of open files and memory mappings,
+ * the factory methods with a <code>maxOpenFiles</code> argument evict the least recently used page files
+ * when the bound is exceeded, and reopen them through the generator on the next access.
+ * As other threads may still be using an evicted page, it is only forced.
+ * The file channel of an evicted page created by the default generator is closed 
+ * once the page is no longer reachable, other evicted pages are left to the garbage collector.
+ * With {@link #precreate(boolean)} the file of the next page is created in the background
+ * when a page is opened, so sequential growth does not wait for file creation.
+ * The precreated page is closed right after its creation, so it does not count as an open file.</p>
+ * 
  */
 public final class DirectorySpace extends PagedSpace {
 
 	private final Path directory; 
 	private final BiFunction<Path, Long, ByteSpace> generator;
+	private final boolean defaultGenerator;
+	private final AtomicReference<Precreation> precreation = new AtomicReference<>();
+	private volatile ExecutorService precreator;
+	private final ReferenceQueue<ByteSpace> unreachable = new ReferenceQueue<>();
+	private final Set<EvictedPage> evicted = ConcurrentHashMap.newKeySet();
 	
 	private DirectorySpace(Path directory, int pageShift, BiFunction<Path, Long ,ByteSpace> generator) {
-		super(pageShift);
+		this(directory, pageShift, generator, false, Integer.MAX_VALUE);
+	}
+	
+	private DirectorySpace(Path directory, int pageShift, BiFunction<Path, Long ,ByteSpace> generator, boolean defaultGenerator, int maxOpenFiles) {
+		super(pageShift, maxOpenFiles);
 		this.directory = directory;
 		this.generator = generator;
+		this.defaultGenerator = defaultGenerator;
 	}
 	
 	private static BiFunction<Path, Long, ByteSpace> defaultGenerator() {
 		return (directory, page) -> {
 			try {
-				return MappedFileSpace.of(directory.resolve("h" + page));
+				return MappedFileSpace.of(fileName(directory, page));
 			} catch (IOException e) {
 				throw new RuntimeException(e);			
 			}			
 		};
 	}
+	private static Path fileName(Path directory, long page) {
+		return directory.resolve("h" + page);
+	}
+	
+	private Path fileName(long page) {
+		return fileName(directory, page);
+	}
+	
 	/**
 	 * returns a Byte Space backed by the given directory
 	 * The implementation uses a 43 bit , 8TB page size.
@@ -43,7 +87,21 @@ public final class DirectorySpace extends PagedSpace {
 	 * @return almost infinite space
 	 */
 	static public DirectorySpace on(Path directory) {
-		return new DirectorySpace(directory, 43, defaultGenerator()); // 8 TB
+		return new DirectorySpace(directory, 43, defaultGenerator(), true, Integer.MAX_VALUE); // 8 TB
+	}
+	
+	/**
+	 * returns a Byte Space backed by the given directory, keeping at most <code>maxOpenFiles</code> page files open.
+	 * The implementation uses a 43 bit , 8TB page size.
+	 * The default generator creates MappedFileSpaces
+	 * @param directory backing the space
+	 * @param maxOpenFiles the maximum number of open page files
+	 * @return almost infinite space
+	 * @throws IllegalArgumentException
+	 * 		if maxOpenFiles is not positive
+	 */
+	static public DirectorySpace on(Path directory, int maxOpenFiles) {
+		return new DirectorySpace(directory, 43, defaultGenerator(), true, maxOpenFiles); // 8 TB
 	}
 	
 	/**
@@ -71,14 +129,224 @@ public final class DirectorySpace extends PagedSpace {
 		return new DirectorySpace(directory, pageShift, generator); 
 	}
 	
+	/**
+	 * returns a Byte Space backed by the given directory, keeping at most <code>maxOpenFiles</code> pages open.
+	 * The creation of the pages is delegated to the <code>generator</code>.
+	 * Pages are forced and released when evicted, and must be recreated with the same content by a later call to the generator,
+	 * as done by generators creating file backed spaces.
+	 * Maximum file size is <code>2^pageShift</code> 
+	 * @param directory backing the space 
+	 * @param generator used to create pages
+	 * @param pageShift page shift in bits
+	 * @param maxOpenFiles the maximum number of open pages
+	 * @return almost infinite space
+	 * @throws IllegalArgumentException
+	 * 		if maxOpenFiles is not positive
+	 */
+	static public DirectorySpace on(Path directory, BiFunction<Path, Long, ByteSpace> generator, int pageShift, int maxOpenFiles) { 
+		return new DirectorySpace(directory, pageShift, generator, false, maxOpenFiles); 
+	}
+	
+	/**
+	 * enables or disables background creation of the next page when a page is opened.
+	 * 
+	 * @param enabled true to enable precreation
+	 * @return this space
+	 */
+	public synchronized DirectorySpace precreate(boolean enabled) {
+		if (enabled && precreator == null) {
+			precreator = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "obelix-precreator");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else if (!enabled && precreator != null) {
+			precreator.shutdown();
+			precreator = null;
+			precreation.set(null);
+		}
+		return this;
+	}
+	
 	@Override
 	protected final ByteSpace map(long page, long pageSize) {
-		return generator.apply(directory, page);
+		closeUnreachable();
+		awaitPrecreation(page);
+		ByteSpace space = create(page);
+		ExecutorService executor = precreator;
+		if (executor != null && page + 1 != 0) {
+			precreate(page + 1, executor);
+		}
+		return space;
+	} 
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation forces the page, but does not close it, 
+	 * as other threads may still be using it.
+	 * The file channel of a page created by the default generator is closed when the page becomes unreachable</p>
+	 */
+	@Override
+	protected void unmap(long page, ByteSpace space) throws IOException {
+		space.force();
+		if (space instanceof MappedFileSpace) {
+			evicted.add(new EvictedPage((MappedFileSpace) space, unreachable));
+		}
+		closeUnreachable();
+	}
+	
+	private void closeUnreachable() {
+		Reference<? extends ByteSpace> reference;
+		while ((reference = unreachable.poll()) != null) {
+			EvictedPage page = (EvictedPage) reference;
+			evicted.remove(page);
+			page.close();
+		}
+	} 
+	
+	private ByteSpace create(long page) {
+		ByteSpace space = generator.apply(directory, page);
+		if (defaultGenerator) {
+			((PagedSpace) space).order(order());
+		}
+		return space;
+	}
+	
+	private void awaitPrecreation(long page) {
+		Precreation current = precreation.get();
+		if (current == null || current.page != page) {
+			return;
+		}
+		precreation.compareAndSet(current, null);
+		try {
+			current.done.join();
+		} catch (CompletionException e) {
+			// let the caller report the error
+		}
+	}
+	
+	private void precreate(long page, ExecutorService executor) {
+		Precreation current = precreation.get();
+		if ((current != null && current.page == page) || isResident(page)) {
+			return;
+		}
+		Precreation candidate;
+		try {
+			candidate = new Precreation(page, CompletableFuture.runAsync(() -> precreate(page), executor));
+		} catch (RejectedExecutionException e) {
+			// precreation disabled concurrently
+			return;
+		}
+		precreation.compareAndSet(current, candidate);
+	}
+	
+	/**
+	 * creates the page and closes it again, so only the creation cost is paid in advance
+	 */
+	private void precreate(long page) {
+		try {
+			create(page).close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 	} 
 	
+	@Override
+	boolean isUnmappedHole(long position, long length) {
+		// only the default generator is known to create a file per page
+		if (!defaultGenerator) {
+			return false;
+		}
+		long last = (position + length - 1) >>> getPageShift();
+		for (long page = position >>> getPageShift() ; page <= last ; page++) {
+			if (!isResident(page) && !isEmpty(fileName(page))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * tests if the file is absent or empty, as a precreated file stays empty until it is mapped
+	 */
+	private static boolean isEmpty(Path file) {
+		try {
+			return !Files.exists(file) || Files.size(file) == 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * a page file only reserves address space, 
+	 * the memory backing it is counted by the page file itself
+	 */
+	@Override
+	long residentBytes() {
+		return 0;
+	}
+	
+	@Override
+	boolean isDiscardable() {
+		return defaultGenerator;
+	}
+	
+	@Override
+	void discard(long page) throws IOException {
+		Files.deleteIfExists(fileName(page));
+	}
+	
 	@Override
 	public long capacity() {
 		return -1L;
 	}
 		
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p> This implementation also stops precreation, and closes the files of evicted pages</p>
+	 */
+	@Override
+	public void close() throws IOException {
+		precreate(false);
+		super.close();
+		closeUnreachable();
+		for (EvictedPage page : evicted) {
+			page.close();
+		}
+		evicted.clear();
+	}
+	
+	private static final class Precreation {
+		private final long page;
+		private final CompletableFuture<Void> done;
+		
+		Precreation(long page, CompletableFuture<Void> done) {
+			this.page = page;
+			this.done = done;
+		}
+	}
+	
+	/**
+	 * keeps the channel of an evicted page, to close it when the page is no longer reachable.
+	 * The mappings of the page stay valid after the channel is closed
+	 */
+	private static final class EvictedPage extends PhantomReference<ByteSpace> {
+		private final FileChannel channel;
+		
+		EvictedPage(MappedFileSpace space, ReferenceQueue<ByteSpace> queue) {
+			super(space, queue);
+			this.channel = space.channel();
+		}
+		
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		}
+	}
+
 }
@@ -0,0 +1,49 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.amplifino.counters.Counts;
+
+final class ExecutorAsyncSpace implements AsyncByteSpace {
+	
+	private final ByteSpace space;
+	private final Executor executor;
+	
+	ExecutorAsyncSpace(ByteSpace space, Executor executor) {
+		this.space = space;
+		this.executor = executor;
+	}
+	
+	@Override
+	public CompletableFuture<ByteBuffer> getAsync(long position, int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException();
+		}
+		return CompletableFuture.supplyAsync(() -> ByteBuffer.wrap(space.getBytes(position, length)), executor);
+	}
+	
+	@Override
+	public CompletableFuture<Void> putAsync(long position, ByteBuffer buffer) {
+		return CompletableFuture.runAsync(() -> space.put(position, buffer), executor);
+	}
+	
+	@Override
+	public AsyncByteSpace force() throws IOException {
+		space.force();
+		return this;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		space.close();
+	}
+	
+	@Override
+	public Counts counts() {
+		return space.counts();
+	}
+
+}
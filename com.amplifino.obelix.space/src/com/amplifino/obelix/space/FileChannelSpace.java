@@ -6,6 +6,9 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.amplifino.counters.Counters;
 import com.amplifino.counters.Counts;
@@ -23,6 +26,8 @@ public final class FileChannelSpace implements ByteSpace {
 
 	private final FileChannel channel;
 	private final Counters<SpaceCounters> counters = Counters.of(SpaceCounters.class);
+	// writes share the read lock, release takes the write lock to truncate
+	private final ReadWriteLock truncateLock = new ReentrantReadWriteLock();
 	
 	private FileChannelSpace(FileChannel channel) {
 		this.channel = channel;
@@ -49,6 +54,25 @@ public final class FileChannelSpace implements ByteSpace {
 		}
 	}
 	
+	FileChannel channel() {
+		return channel;
+	}
+	
+	/**
+	 * returns the lock held by writers to keep release from truncating the file under them
+	 */
+	Lock writeGuard() {
+		return truncateLock.readLock();
+	}
+	
+	boolean isHole(long position) {
+		try {
+			return position >= channel.size();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
 	/**
 	 * {inheritDoc}
 	 * 
@@ -97,11 +121,15 @@ public final class FileChannelSpace implements ByteSpace {
 	@Override 
 	public ByteSpace put(long position, ByteBuffer buffer) {
 		counters.increment(LOGICALWRITES).increment(PHYSICALWRITES).add(BYTESWRITTEN, buffer.remaining());
+		Lock lock = writeGuard();
+		lock.lock();
 		try {
 			channel.write(buffer, position);
 			return this;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -185,6 +213,37 @@ public final class FileChannelSpace implements ByteSpace {
 		return put(position, ByteBuffer.allocate(Double.BYTES).putDouble(0, in));
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation truncates the file if the range extends to the end of file,
+	 * so the released bytes no longer occupy disk space.
+	 * Truncation excludes concurrent writes, so a write beyond the released range is never cut off</p>
+	 */
+	@Override
+	public ByteSpace release(long position, long length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		Lock lock = truncateLock.writeLock();
+		lock.lock();
+		try {
+			long size = channel.size();
+			if (position >= size) {
+				return this;
+			}
+			if (position + length >= size) {
+				channel.truncate(position);
+				return this;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.unlock();
+		}
+		return fill(position, length, (byte) 0);
+	}
+	
 	@Override
 	/**
 	 * {inheritDoc}
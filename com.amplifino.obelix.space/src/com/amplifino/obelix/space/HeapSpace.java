@@ -40,7 +40,18 @@ public final class HeapSpace extends PagedSpace {
 		if (pageSize > Integer.MAX_VALUE) {
 			throw new IllegalArgumentException();
 		}
-		return ByteBufferSpace.of(ByteBuffer.allocate((int) pageSize));
+		return ByteBufferSpace.of(ByteBuffer.allocate((int) pageSize).order(order()));
 	}
 	
+	@Override
+	boolean isUnmappedHole(long position, long length) {
+		// pages are allocated on first use
+		return true;
+	}
+
+	@Override
+	boolean isDiscardable() {
+		return true;
+	}
+
 }
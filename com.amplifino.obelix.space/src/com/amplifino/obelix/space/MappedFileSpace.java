@@ -3,6 +3,7 @@ package com.amplifino.obelix.space;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -47,6 +48,27 @@ public final class MappedFileSpace extends PagedSpace {
 		this.mapMode = mapMode;
 	}
 	
+	/**
+	 * Creates a new Byte Space backed by a memory mapped file, 
+	 * keeping at most <code>maxPages</code> pages mapped.
+	 * Evicted pages are forced and released, the memory mapping is removed when the page is garbage collected.
+	 * 
+	 * @param channel a channel to the backing file
+	 * @param mapMode READ_WRITE or READ_ONLY 
+	 * @param pageShift number of bits in the page shift
+	 * @param maxPages maximum number of mapped pages
+	 * @throws IllegalArgumentException
+	 * 		if mapMode is PRIVATE, as evicting a private page would lose its content
+	 */
+	public MappedFileSpace(FileChannel channel, MapMode mapMode, int pageShift, int maxPages) {
+		super(pageShift, maxPages);
+		if (pageShift > 30 || mapMode == MapMode.PRIVATE) {
+			throw new IllegalArgumentException();
+		}
+		this.channel = channel;
+		this.mapMode = mapMode;
+	}
+	
 	/**
 	 * Creates a new Byte Space backed by the argument in READ_WRITE mode and a standard page shift of 30.
 	 * If the file does not exist, a sparse file will be created if the filesystem supports sparse files
@@ -59,6 +81,20 @@ public final class MappedFileSpace extends PagedSpace {
 		return new MappedFileSpace(channel(path, false), MapMode.READ_WRITE);
 	}
 	
+	/**
+	 * Creates a new Byte Space backed by the argument in READ_WRITE mode and a standard page shift of 30,
+	 * keeping at most <code>maxPages</code> pages mapped.
+	 * If the file does not exist, a sparse file will be created if the filesystem supports sparse files
+	 * @param path backing file
+	 * @param maxPages maximum number of mapped pages
+	 * @return the byte space
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	public static MappedFileSpace of(Path path, int maxPages) throws IOException {
+		return new MappedFileSpace(channel(path, false), MapMode.READ_WRITE, 30, maxPages);
+	}
+	
 	/**
 	 * Creates a new Byte Space backed by temporary virtual memory.
 	 * A file with the arguments name in the users temp directory will be created or opened,
@@ -96,7 +132,12 @@ public final class MappedFileSpace extends PagedSpace {
 			if (readOnly) {
 				throw new IOException("File " + path + " not found");
 			} else {
-				return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE);
+				try {
+					return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE);
+				} catch (FileAlreadyExistsException e) {
+					// created concurrently
+					return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				}
 			}
 		}
 	}
@@ -111,25 +152,49 @@ public final class MappedFileSpace extends PagedSpace {
 			throw new IllegalArgumentException();
 		}
 		try {
-			return ByteBufferSpace.of(channel.map(mapMode, page << getPageShift() , (int) pageSize));
+			return ByteBufferSpace.of(channel.map(mapMode, page << getPageShift() , (int) pageSize).order(order()));
 		} catch (IOException ex) {
 			throw new RuntimeException(ex);
 		}
 	}
 	
+	@Override
+	boolean isUnmappedHole(long position, long length) {
+		try {
+			return position >= channel.size();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	FileChannel channel() {
+		return channel;
+	}
+	
 	/**
-	 *  {inheritDoc}
-	 *  
-	 *  In addition to the super class behavior, 
-	 *  this implementation also  calls force on the underlying file channel.
+	 * returns the channel if it reflects the content of this space, 
+	 * that is if the map mode is not PRIVATE
 	 */
+	FileChannel sharedChannel() {
+		return mapMode == MapMode.PRIVATE ? null : channel;
+	}
+	
 	@Override
 	public MappedFileSpace force() throws IOException {
 		super.force();
-		channel.force(true);
 		return this;
 	}
 	
+	/**
+	 *  {inheritDoc}
+	 *  
+	 *  This implementation calls force on the underlying file channel.
+	 */
+	@Override
+	protected void sync() throws IOException {
+		channel.force(true);
+	}
+	
 	/**
 	 *  {inheritDoc}
 	 *  
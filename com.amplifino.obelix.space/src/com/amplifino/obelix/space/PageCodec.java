@@ -0,0 +1,41 @@
+package com.amplifino.obelix.space;
+
+import java.util.zip.Deflater;
+
+import org.osgi.annotation.versioning.ConsumerType;
+
+/**
+ * Page compression codec
+ * 
+ * <p>Used by {@link CompressedSpace} to compress pages before they are written to the backing space.
+ * Implementations must be thread safe.</p>
+ * 
+ */
+@ConsumerType
+public interface PageCodec {
+	
+	/**
+	 * compresses a page
+	 * 
+	 * @param page the uncompressed page
+	 * @return the compressed bytes
+	 */
+	byte[] compress(byte[] page);
+	
+	/**
+	 * decompresses a page
+	 * 
+	 * @param compressed the bytes returned by a previous call to compress
+	 * @param page the array receiving the uncompressed page, with the length of the original page
+	 */
+	void decompress(byte[] compressed, byte[] page);
+	
+	/**
+	 * returns the built-in codec, using the Deflate (LZ77 and Huffman coding) algorithm tuned for speed
+	 * 
+	 * @return the deflate codec
+	 */
+	static PageCodec deflate() {
+		return new DeflateCodec(Deflater.BEST_SPEED);
+	}
+}
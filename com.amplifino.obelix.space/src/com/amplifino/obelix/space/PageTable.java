@@ -0,0 +1,149 @@
+package com.amplifino.obelix.space;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Page table mapping page numbers to pages
+ * 
+ * <p> Page numbers below <code>2^20</code> are resolved through a two level radix directory,
+ * so a lookup costs two array loads and no boxing.
+ * Directory leaves are allocated on first use and published with CAS semantics.
+ * Higher page numbers, only used by sparse spaces, fall back to a ConcurrentHashMap.</p>
+ * 
+ * <p> Lookups never lock. Inserts lock the directory leaf, so that the page factory is called only once per page.</p>
+ * 
+ */
+final class PageTable<T> {
+	
+	private static final int LEAFBITS = 10;
+	private static final int LEAFSIZE = 1 << LEAFBITS;
+	private static final int LEAFMASK = LEAFSIZE - 1;
+	private static final long DENSEPAGES = 1L << (2 * LEAFBITS);
+	
+	private final AtomicReferenceArray<AtomicReferenceArray<T>> directory = new AtomicReferenceArray<>(LEAFSIZE);
+	private final Map<Long, T> sparse = new ConcurrentHashMap<>();
+	private final AtomicInteger size = new AtomicInteger();
+	
+	T get(long page) {
+		if (Long.compareUnsigned(page, DENSEPAGES) < 0) {
+			AtomicReferenceArray<T> leaf = directory.get((int) (page >>> LEAFBITS));
+			return leaf == null ? null : leaf.get((int) page & LEAFMASK);
+		} else {
+			return sparse.get(page);
+		}
+	}
+	
+	T computeIfAbsent(long page, LongFunction<T> factory) {
+		if (Long.compareUnsigned(page, DENSEPAGES) < 0) {
+			AtomicReferenceArray<T> leaf = leaf((int) (page >>> LEAFBITS));
+			int index = (int) page & LEAFMASK;
+			T result = leaf.get(index);
+			if (result != null) {
+				return result;
+			}
+			synchronized (leaf) {
+				result = leaf.get(index);
+				if (result == null) {
+					result = factory.apply(page);
+					leaf.set(index, result);
+					size.incrementAndGet();
+				}
+				return result;
+			}
+		} else {
+			return sparse.computeIfAbsent(page, key -> {
+				T result = factory.apply(key);
+				size.incrementAndGet();
+				return result;
+			});
+		}
+	}
+	
+	boolean remove(long page, T value) {
+		boolean removed;
+		if (Long.compareUnsigned(page, DENSEPAGES) < 0) {
+			AtomicReferenceArray<T> leaf = directory.get((int) (page >>> LEAFBITS));
+			removed = leaf != null && leaf.compareAndSet((int) page & LEAFMASK, value, null);
+		} else {
+			removed = sparse.remove(page, value);
+		}
+		if (removed) {
+			size.decrementAndGet();
+		}
+		return removed;
+	}
+	
+	int size() {
+		return size.get();
+	}
+	
+	void clear() {
+		for (int i = 0 ; i < directory.length(); i++) {
+			directory.set(i, null);
+		}
+		sparse.clear();
+		size.set(0);
+	}
+	
+	List<T> values() {
+		List<T> result = new ArrayList<>(size());
+		for (int i = 0 ; i < directory.length(); i++) {
+			AtomicReferenceArray<T> leaf = directory.get(i);
+			if (leaf != null) {
+				for (int j = 0 ; j < leaf.length(); j++) {
+					T value = leaf.get(j);
+					if (value != null) {
+						result.add(value);
+					}
+				}
+			}
+		}
+		result.addAll(sparse.values());
+		return result;
+	}
+	
+	/**
+	 * returns the pages with page number in <code>[from, to)</code>, comparing page numbers unsigned.
+	 * Cost is proportional to the number of allocated directory leaves overlapping the range.
+	 */
+	List<T> values(long from, long to) {
+		List<T> result = new ArrayList<>();
+		if (Long.compareUnsigned(from, DENSEPAGES) < 0) {
+			long denseTo = Long.compareUnsigned(to, DENSEPAGES) < 0 ? to : DENSEPAGES;
+			for (long page = from ; page < denseTo ; ) {
+				AtomicReferenceArray<T> leaf = directory.get((int) (page >>> LEAFBITS));
+				long leafEnd = Math.min(denseTo, ((page >>> LEAFBITS) + 1) << LEAFBITS);
+				if (leaf != null) {
+					for (long i = page ; i < leafEnd ; i++) {
+						T value = leaf.get((int) i & LEAFMASK);
+						if (value != null) {
+							result.add(value);
+						}
+					}
+				}
+				page = leafEnd;
+			}
+		}
+		sparse.forEach((page, value) -> {
+			if (Long.compareUnsigned(page, from) >= 0 && Long.compareUnsigned(page, to) < 0) {
+				result.add(value);
+			}
+		});
+		return result;
+	}
+	
+	private AtomicReferenceArray<T> leaf(int index) {
+		AtomicReferenceArray<T> leaf = directory.get(index);
+		if (leaf == null) {
+			directory.compareAndSet(index, null, new AtomicReferenceArray<>(LEAFSIZE));
+			leaf = directory.get(index);
+		}
+		return leaf;
+	}
+}
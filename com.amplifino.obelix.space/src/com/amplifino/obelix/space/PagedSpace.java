@@ -1,9 +1,28 @@
 package com.amplifino.obelix.space;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import com.amplifino.counters.Accumulators;
 import com.amplifino.counters.Counters;
@@ -14,48 +33,221 @@ import com.amplifino.counters.Counts;
  * 
  * <p> This class splits the 64 bit address in two parts:
  * The page number and the page offset.
- * The page number is used as a key into the page map to find the ByteSpace serving the page
+ * The page number is used as a key into the page table to find the ByteSpace serving the page
  * The split between the page number and the offset is always on a bit boundary</p> 
+ * 
+ * <p> By default pages stay cached until the space is closed.
+ * Subclasses can limit the number of resident pages by passing a page budget to the constructor.
+ * When the budget is exceeded, pages are evicted using the CLOCK (second chance) algorithm.
+ * Eviction is only safe for pages that can be mapped again without loss of data, such as
+ * shared memory mapped file regions.</p>
+ * 
+ * <p> An optional flusher thread forces modified pages in the background,
+ * to bound the amount of unflushed data and to reduce the latency of a subsequent force.</p>
+ * 
+ * <p> Snapshots are copy on write: while a snapshot is open, 
+ * the first write to a 64K block copies the block before modifying it.</p>
  */
 public abstract class PagedSpace implements ByteSpace {
 
+	private static final int PREFETCHSTEP = 4096;
+	private static final int WARMUPSHIFT = 20;
+	private static final int SNAPSHOTSHIFT = 16;
+	private static final int SNAPSHOTLOCKS = 64;
+	
 	private final int pageShift;
 	private final long pageSize;
 	private final long offsetMask;
+	private final int maxPages;
 	
-	private Map<Long, ByteSpace> map = new ConcurrentHashMap<>();
+	private PageTable<Page> pages = new PageTable<>();
+	private final Queue<Page> clock = new ConcurrentLinkedQueue<>();
 	private final Accumulators<SpaceCounters> counters =  Accumulators.of(SpaceCounters.class);
+	private volatile boolean statistics = true;
+	private volatile long readahead;
+	private volatile ByteOrder order = ByteOrder.BIG_ENDIAN;
+	private final Object flushLock = new Object();
+	private long forceRequests;
+	private long forcesCompleted;
+	private boolean flushing;
+	private volatile ScheduledExecutorService flusher;
+	private volatile long flushBudget;
+	private final LongAdder unflushed = new LongAdder();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private volatile boolean unsynced;
+	private final int snapshotShift;
+	private final Object[] blockLocks = new Object[SNAPSHOTLOCKS];
+	private volatile SnapshotSpace[] snapshots = new SnapshotSpace[0];
 	
 	/**
 	 * creates a new PagedSpace using <code>pageShift</code>bits for the offset
 	 * That is the page size is <code>2^pageShift</code>
+	 * Pages are never evicted.
 	 * 
 	 * @param pageShift 
 	 * @throws IllegalArgumentException
 	 * 		if pageShift is negative or greater than 62
 	 */
 	protected PagedSpace(int pageShift) {
+		this(pageShift, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * creates a new PagedSpace using <code>pageShift</code>bits for the offset,
+	 * keeping at most <code>maxPages</code> pages resident.
+	 * 
+	 * @param pageShift
+	 * @param maxPages the maximum number of resident pages
+	 * @throws IllegalArgumentException
+	 * 		if pageShift is negative or greater than 62, or maxPages is not positive
+	 */
+	protected PagedSpace(int pageShift, int maxPages) {
 		if (pageShift < 0 || pageShift > 62) {
 			throw new IllegalArgumentException("Illegal page shift: " + pageShift);
 		}
+		if (maxPages <= 0) {
+			throw new IllegalArgumentException("Illegal page budget: " + maxPages);
+		}
 		this.pageShift = pageShift;
 		this.pageSize = 1L << pageShift;
 		this.offsetMask = this.pageSize - 1;
+		this.maxPages = maxPages;
+		this.snapshotShift = Math.min(pageShift, SNAPSHOTSHIFT);
+		for (int i = 0 ; i < blockLocks.length ; i++) {
+			blockLocks[i] = new Object();
+		}
 	}
 		
 	private ByteSpace getPage(long position) {
-		return map.computeIfAbsent(position >>> pageShift, page -> this.map(page));
+		return page(position).reference();
+	}
+	
+	private Page page(long position) {
+		Page page = pages.get(position >>> pageShift);
+		if (page == null) {
+			page = pageIn(position >>> pageShift);
+		}
+		return page;
+	}
+	
+	private Page pageForWrite(long position, long length) {
+		if (snapshots.length > 0) {
+			preserve(position, length);
+		}
+		return page(position);
+	}
+	
+	private Page pageIn(long pageNumber) {
+		Page page = pages.computeIfAbsent(pageNumber, this::newPage);
+		if (isBounded() && pages.size() > maxPages) {
+			evict();
+		}
+		return page;
+	}
+	
+	private Page newPage(long pageNumber) {
+		counters.increment(SpaceCounters.PAGEFAULTS).accumulate(SpaceCounters.RESIDENTBYTES, residentBytes());
+		ByteSpace space = map(pageNumber, pageSize);
+		if (space.order() != order) {
+			throw new IllegalStateException("Page byte order " + space.order() + " does not match " + order);
+		}
+		Page page = new Page(pageNumber, space);
+		if (isBounded()) {
+			clock.add(page);
+		}
+		return page;
+	}
+	
+	private boolean isBounded() {
+		return maxPages != Integer.MAX_VALUE;
+	}
+	
+	private synchronized void evict() {
+		while (pages.size() > maxPages) {
+			Page victim = clock.poll();
+			if (victim == null) {
+				return;
+			}
+			if (victim.clearReference() || !pages.remove(victim.number(), victim)) {
+				// second chance, or page not yet published by the mapping thread
+				clock.add(victim);
+			} else {
+				counters.increment(SpaceCounters.EVICTIONS).accumulate(SpaceCounters.RESIDENTBYTES, -residentBytes());
+				if (victim.clean()) {
+					// unmap writes the page back, the next force still has to sync
+					unsynced = true;
+				}
+				try {
+					unmap(victim.number(), victim.space());
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
 	}
 	
-	private final ByteSpace map(long page) {
-		counters.increment(SpaceCounters.PAGEFAULTS);
-		return map(page, pageSize);
+	boolean isHole(long position, long length) {
+		if (length == 0) {
+			return true;
+		}
+		long end = position + length;
+		for (Page page : pages.values(position >>> pageShift, ((end - 1) >>> pageShift) + 1)) {
+			long pageStart = page.number() << pageShift;
+			long from = Math.max(position, pageStart);
+			long to = Math.min(end, pageStart + pageSize);
+			if (!SpaceTransfer.isHole(page.space(), from - pageStart, to - from)) {
+				return false;
+			}
+		}
+		return isUnmappedHole(position, length);
+	}
+	
+	/**
+	 * tests if the pages in the given range that are not resident are known to contain only zeros,
+	 * without mapping them. Resident pages in the range can be ignored.
+	 */
+	boolean isUnmappedHole(long position, long length) {
+		return false;
+	}
+	
+	/**
+	 * tests if released pages can be dropped, as a page that is mapped again reads as zeros
+	 * after {@link #discard(long)}
+	 */
+	boolean isDiscardable() {
+		return false;
+	}
+	
+	/**
+	 * frees the storage of a dropped page
+	 */
+	void discard(long page) throws IOException {
+	}
+	
+	/**
+	 * returns the number of bytes a resident page adds to the {@link SpaceCounters#RESIDENTBYTES} counter
+	 */
+	long residentBytes() {
+		return pageSize;
+	}
+	
+	/**
+	 * records that the backing store was written without going through the pages,
+	 * so the next force syncs even if no page is dirty
+	 */
+	void writtenBehind() {
+		unsynced = true;
+	}
+	
+	boolean isResident(long page) {
+		return pages.get(page) != null;
 	}
 	
 	/**
 	 * returns a byte space serving the requested page.
 	 * This method will only be called once for a given page, 
-	 * as pages are cached by the implementation
+	 * as pages are cached by the implementation,
+	 * unless the page was evicted since the previous call
 	 *  
 	 * @param page requested page number
 	 * @param capacity the page size
@@ -63,13 +255,66 @@ public abstract class PagedSpace implements ByteSpace {
 	 */
 	protected abstract ByteSpace map(long page, long capacity);
 	
+	/**
+	 * releases a page that is evicted from the page cache.
+	 * 
+	 * <p> The default implementation calls close on the page.
+	 * Note that other threads may still be using the page when it is evicted,
+	 * so implementations should not invalidate the page's memory,
+	 * but leave that to the garbage collector</p>
+	 * 
+	 * @param page the evicted page number
+	 * @param space the ByteSpace that was serving the page
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	protected void unmap(long page, ByteSpace space) throws IOException {
+		space.close();
+	}
+	
+	private void countRead(int length) {
+		if (statistics) {
+			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, length);
+		}
+	}
+	
+	private void countLogicalRead(int length) {
+		if (statistics) {
+			counters.increment(SpaceCounters.LOGICALREADS).accumulate(SpaceCounters.BYTESREAD, length);
+		}
+	}
+	
+	private void countPhysicalRead() {
+		if (statistics) {
+			counters.increment(SpaceCounters.PHYSICALREADS);
+		}
+	}
+	
+	private void countWrite(int length) {
+		if (statistics) {
+			counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, length);
+		}
+	}
+	
+	private void countLogicalWrite(long length) {
+		if (statistics) {
+			counters.increment(SpaceCounters.LOGICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, length);
+		}
+	}
+	
+	private void countPhysicalWrite() {
+		if (statistics) {
+			counters.increment(SpaceCounters.PHYSICALWRITES);
+		}
+	}
+	
 	private long getOffset(long position) {
 		return position & offsetMask; 
 	}
 	
 	@Override
 	public PagedSpace put(long position, byte[] bytes, int start , int length) {
-		counters.increment(SpaceCounters.LOGICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, length);
+		countLogicalWrite(length);
 		return doPut(position, bytes, start, length);
 	}
 	
@@ -77,11 +322,15 @@ public abstract class PagedSpace implements ByteSpace {
 		long offset = getOffset(position);
 		if (offset + length > pageSize) {
 			int split = (int) (pageSize - offset);
-			getPage(position).put(offset, bytes, start, split);
+			Page page = pageForWrite(position, split);
+			page.reference().put(offset, bytes, start, split);
+			page.modified(split);
 			return doPut(position + split , bytes, start + split , length - split);
 		} else {
-			counters.increment(SpaceCounters.PHYSICALWRITES);
-			getPage(position).put(offset, bytes, start, length);
+			countPhysicalWrite();
+			Page page = pageForWrite(position, length);
+			page.reference().put(offset, bytes, start, length);
+			page.modified(length);
 			return this;
 		}
 	}
@@ -95,7 +344,7 @@ public abstract class PagedSpace implements ByteSpace {
 	
 	@Override
 	public PagedSpace get(long position, byte[] bytes, int start , int length) {
-		counters.increment(SpaceCounters.LOGICALREADS).accumulate(SpaceCounters.BYTESREAD, length);
+		countLogicalRead(length);
 		return doGet(position, bytes, start, length);
 	}
 
@@ -106,7 +355,7 @@ public abstract class PagedSpace implements ByteSpace {
 			getPage(position).get(offset, bytes, start, split);
 			return doGet(position + split , bytes, start + split, length - split);			
 		} else {
-			counters.increment(SpaceCounters.PHYSICALREADS);
+			countPhysicalRead();
 			getPage(position).get(offset, bytes, start, length);
 			return this;
 		}
@@ -122,13 +371,44 @@ public abstract class PagedSpace implements ByteSpace {
 	public ByteBuffer get(long position, int length) {
 		long offset = getOffset(position);
 		if (offset + length > pageSize) {
-			return ByteBuffer.wrap(getBytes(position, length));
+			return ByteBuffer.wrap(getBytes(position, length)).order(order);
 		} else {
-			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, length);
+			countRead(length);
 			return getPage(position).get(offset, length);
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>If readahead is enabled, this implementation prefetches the readahead window beyond every returned chunk</p>
+	 */
+	@Override
+	public Stream<ByteBuffer> get(long position, long length, int maxChunkSize) {
+		long window = readahead;
+		if (window == 0) {
+			return ByteSpace.super.get(position, length, maxChunkSize);
+		}
+		if (maxChunkSize <= 0) {
+			throw new IllegalArgumentException();
+		}
+		if (length < 0 || position + length <= 0) {
+			throw new IllegalArgumentException();
+		}
+		Readahead scan = new Readahead(position, position + length, window, PREFETCHSTEP, this::touch, counters);
+		return LongStream.range(0, (length + maxChunkSize - 1) / maxChunkSize)
+			.mapToObj(chunk -> {
+				long start = position + chunk * maxChunkSize;
+				int size = (int) Math.min(maxChunkSize, position + length - start);
+				scan.access(start, size);
+				return get(start, size);
+			});
+	}
+	
+	private void touch(long position) {
+		getPage(position).get(getOffset(position));
+	}
+	
 	@Override
 	public byte[] getBytes(long position, int length) {
 		byte[] bytes = new byte[length];
@@ -138,7 +418,7 @@ public abstract class PagedSpace implements ByteSpace {
 	
 	@Override 
 	public byte get(long position) {
-		counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, Byte.BYTES);
+		countRead(Byte.BYTES);
 		return getPage(position).get(getOffset(position));
 	}
 	
@@ -148,7 +428,7 @@ public abstract class PagedSpace implements ByteSpace {
 		if (offset + Short.BYTES > pageSize) {
 			return get(position, Short.BYTES).getShort();
 		} else {
-			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, Short.BYTES);
+			countRead(Short.BYTES);
 			return getPage(position).getShort(offset);
 		}
 	}
@@ -159,7 +439,7 @@ public abstract class PagedSpace implements ByteSpace {
 		if (offset + Character.BYTES > pageSize) {
 			return get(position, Character.BYTES).getChar();
 		} else {
-			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, Character.BYTES);
+			countRead(Character.BYTES);
 			return getPage(position).getChar(offset);
 		}
 	}
@@ -170,7 +450,7 @@ public abstract class PagedSpace implements ByteSpace {
 		if (offset + Integer.BYTES > pageSize) {
 			return get(position, Integer.BYTES).getInt();
 		} else {
-			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, Integer.BYTES);
+			countRead(Integer.BYTES);
 			return getPage(position).getInt(offset);
 		}
 	}
@@ -181,7 +461,7 @@ public abstract class PagedSpace implements ByteSpace {
 		if (offset + Float.BYTES > pageSize) {
 			return get(position, Float.BYTES).getFloat();
 		} else {
-			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, Float.BYTES);
+			countRead(Float.BYTES);
 			return getPage(position).getFloat(offset);
 		}
 	}
@@ -192,7 +472,7 @@ public abstract class PagedSpace implements ByteSpace {
 		if (offset + Long.BYTES > pageSize) {
 			return get(position, Long.BYTES).getLong();
 		} else {
-			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, Long.BYTES);
+			countRead(Long.BYTES);
 			return getPage(position).getLong(offset);
 		}
 	}
@@ -203,14 +483,16 @@ public abstract class PagedSpace implements ByteSpace {
 		if (offset + Double.BYTES > pageSize) {
 			return get(position, Double.BYTES).getDouble();
 		} else {
-			counters.increment(SpaceCounters.LOGICALREADS).increment(SpaceCounters.PHYSICALREADS).accumulate(SpaceCounters.BYTESREAD, Double.BYTES);
+			countRead(Double.BYTES);
 			return getPage(position).getDouble(offset);
 		}
 	}
 	@Override
 	public ByteSpace put(long position, byte in) {
-		counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, Byte.BYTES);
-		getPage(position).put(getOffset(position), in);
+		countWrite(Byte.BYTES);
+		Page page = pageForWrite(position, Byte.BYTES);
+		page.reference().put(getOffset(position), in);
+		page.modified(Byte.BYTES);
 		return this;
 	}
 	
@@ -218,10 +500,12 @@ public abstract class PagedSpace implements ByteSpace {
 	public ByteSpace putShort(long position, short in) {
 		long offset = getOffset(position);
 		if (offset + Short.BYTES > pageSize) {
-			put(position, ByteBuffer.allocate(Short.BYTES).putShort(0, in));
+			put(position, ByteBuffer.allocate(Short.BYTES).order(order).putShort(0, in));
 		} else {
-			counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, Short.BYTES);
-			getPage(position).putShort(offset, in);
+			countWrite(Short.BYTES);
+			Page page = pageForWrite(position, Short.BYTES);
+			page.reference().putShort(offset, in);
+			page.modified(Short.BYTES);
 		}
 		return this;
 	}
@@ -230,10 +514,12 @@ public abstract class PagedSpace implements ByteSpace {
 	public ByteSpace putChar(long position, char in) {
 		long offset = getOffset(position);
 		if (offset + Character.BYTES > pageSize) {
-			put(position, ByteBuffer.allocate(Character.BYTES).putChar(0, in));
+			put(position, ByteBuffer.allocate(Character.BYTES).order(order).putChar(0, in));
 		} else {
-			counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, Character.BYTES);
-			getPage(position).putChar(offset, in);
+			countWrite(Character.BYTES);
+			Page page = pageForWrite(position, Character.BYTES);
+			page.reference().putChar(offset, in);
+			page.modified(Character.BYTES);
 		}
 		return this;
 	}
@@ -242,10 +528,12 @@ public abstract class PagedSpace implements ByteSpace {
 	public ByteSpace putInt(long position, int in) {
 		long offset = getOffset(position);
 		if (offset + Integer.BYTES > pageSize) {
-			put(position, ByteBuffer.allocate(Integer.BYTES).putInt(0, in));
+			put(position, ByteBuffer.allocate(Integer.BYTES).order(order).putInt(0, in));
 		} else {
-			counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, Integer.BYTES);
-			getPage(position).putInt(offset, in);
+			countWrite(Integer.BYTES);
+			Page page = pageForWrite(position, Integer.BYTES);
+			page.reference().putInt(offset, in);
+			page.modified(Integer.BYTES);
 		}
 		return this;
 	}
@@ -254,10 +542,12 @@ public abstract class PagedSpace implements ByteSpace {
 	public ByteSpace putFloat(long position, float in) {
 		long offset = getOffset(position);
 		if (offset + Float.BYTES > pageSize) {
-			put(position, ByteBuffer.allocate(Float.BYTES).putFloat(0, in));
+			put(position, ByteBuffer.allocate(Float.BYTES).order(order).putFloat(0, in));
 		} else {
-			counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, Float.BYTES);
-			getPage(position).putFloat(offset, in);
+			countWrite(Float.BYTES);
+			Page page = pageForWrite(position, Float.BYTES);
+			page.reference().putFloat(offset, in);
+			page.modified(Float.BYTES);
 		}
 		return this;
 	}
@@ -266,10 +556,12 @@ public abstract class PagedSpace implements ByteSpace {
 	public ByteSpace putLong(long position, long in) {
 		long offset = getOffset(position);
 		if (offset + Long.BYTES > pageSize) {
-			put(position, ByteBuffer.allocate(Long.BYTES).putLong(0, in));
+			put(position, ByteBuffer.allocate(Long.BYTES).order(order).putLong(0, in));
 		} else {
-			counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, Long.BYTES);
-			getPage(position).putLong(offset, in);
+			countWrite(Long.BYTES);
+			Page page = pageForWrite(position, Long.BYTES);
+			page.reference().putLong(offset, in);
+			page.modified(Long.BYTES);
 		}
 		return this;
 	}
@@ -278,40 +570,725 @@ public abstract class PagedSpace implements ByteSpace {
 	public ByteSpace putDouble(long position, double in) {
 		long offset = getOffset(position);
 		if (offset + Integer.BYTES > pageSize) {
-			put(position, ByteBuffer.allocate(Double.BYTES).putDouble(0, in));
+			put(position, ByteBuffer.allocate(Double.BYTES).order(order).putDouble(0, in));
 		} else {
-			counters.increment(SpaceCounters.LOGICALWRITES).increment(SpaceCounters.PHYSICALWRITES).accumulate(SpaceCounters.BYTESWRITTEN, Double.BYTES);
-			getPage(position).putDouble(offset, in);
+			countWrite(Double.BYTES);
+			Page page = pageForWrite(position, Double.BYTES);
+			page.reference().putDouble(offset, in);
+			page.modified(Double.BYTES);
 		}
 		return this;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public ByteSpace getLongs(long position, long[] longs, int start, int length) {
+		return bulk(position, PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES), start, Long.BYTES, false,
+			(page, offset, index, count) -> page.getLongs(offset, longs, index, count),
+			(address, index) -> longs[index] = getLong(address));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public ByteSpace putLongs(long position, long[] longs, int start, int length) {
+		return bulk(position, PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES), start, Long.BYTES, true,
+			(page, offset, index, count) -> page.putLongs(offset, longs, index, count),
+			(address, index) -> putLong(address, longs[index]));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public ByteSpace getInts(long position, int[] ints, int start, int length) {
+		return bulk(position, PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES), start, Integer.BYTES, false,
+			(page, offset, index, count) -> page.getInts(offset, ints, index, count),
+			(address, index) -> ints[index] = getInt(address));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public ByteSpace putInts(long position, int[] ints, int start, int length) {
+		return bulk(position, PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES), start, Integer.BYTES, true,
+			(page, offset, index, count) -> page.putInts(offset, ints, index, count),
+			(address, index) -> putInt(address, ints[index]));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public ByteSpace getDoubles(long position, double[] doubles, int start, int length) {
+		return bulk(position, PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES), start, Double.BYTES, false,
+			(page, offset, index, count) -> page.getDoubles(offset, doubles, index, count),
+			(address, index) -> doubles[index] = getDouble(address));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public ByteSpace putDoubles(long position, double[] doubles, int start, int length) {
+		return bulk(position, PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES), start, Double.BYTES, true,
+			(page, offset, index, count) -> page.putDoubles(offset, doubles, index, count),
+			(address, index) -> putDouble(address, doubles[index]));
+	}
+	
+	private PagedSpace bulk(long position, int bytes, int start, int size, boolean write, PageAccess pageAccess, ElementAccess crossing) {
+		if (write) {
+			countLogicalWrite(bytes);
+		} else {
+			countLogicalRead(bytes);
+		}
+		int index = start;
+		int remaining = bytes / size;
+		while (remaining > 0) {
+			long offset = getOffset(position);
+			int count = (int) Math.min(remaining, (pageSize - offset) / size);
+			if (count == 0) {
+				// value crosses a page boundary
+				crossing.access(position, index);
+				count = 1;
+			} else if (write) {
+				countPhysicalWrite();
+				Page page = pageForWrite(position, count * size);
+				pageAccess.access(page.reference(), offset, index, count);
+				page.modified(count * size);
+			} else {
+				countPhysicalRead();
+				pageAccess.access(getPage(position), offset, index, count);
+			}
+			position += (long) count * size;
+			index += count;
+			remaining -= count;
+		}
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public int compare(long position, byte[] key, int start, int length) {
+		countLogicalRead(PrimitiveArrays.byteLength(key.length, start, length, Byte.BYTES));
+		int done = 0;
+		while (done < length) {
+			long offset = getOffset(position + done);
+			int count = (int) Math.min(length - done, pageSize - offset);
+			countPhysicalRead();
+			int result = getPage(position + done).compare(offset, key, start + done, count);
+			if (result != 0) {
+				return result;
+			}
+			done += count;
+		}
+		return 0;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public int mismatch(long position, ByteSpace other, long otherPosition, int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		countLogicalRead(length);
+		int done = 0;
+		while (done < length) {
+			long offset = getOffset(position + done);
+			int count = (int) Math.min(length - done, pageSize - offset);
+			countPhysicalRead();
+			int result = getPage(position + done).mismatch(offset, other, otherPosition + done, count);
+			if (result >= 0) {
+				return done + result;
+			}
+			done += count;
+		}
+		return -1;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation reads the words from the pages, 
+	 * only looking up a page once per page boundary</p>
+	 */
+	@Override
+	public long hash64(long position, int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		countLogicalRead(length);
+		long hash = ByteRanges.SEED;
+		ByteSpace page = null;
+		long pageNumber = -1;
+		int i = 0;
+		for (; i <= length - Long.BYTES ; i += Long.BYTES) {
+			long address = position + i;
+			long offset = getOffset(address);
+			if (offset + Long.BYTES > pageSize) {
+				hash = ByteRanges.mix(hash, ByteRanges.word(getLong(address), order));
+			} else {
+				if (page == null || address >>> pageShift != pageNumber) {
+					countPhysicalRead();
+					pageNumber = address >>> pageShift;
+					page = getPage(address);
+				}
+				hash = ByteRanges.mix(hash, ByteRanges.word(page.getLong(offset), order));
+			}
+		}
+		return ByteRanges.finish(hash, ByteRanges.tail(this, position + i, length - i), length);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the pages, 
+	 * only splitting the range at page boundaries</p>
+	 */
+	@Override
+	public ByteSpace fill(long position, long length, byte value) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		countLogicalWrite(length);
+		long done = 0;
+		while (done < length) {
+			long offset = getOffset(position + done);
+			long count = Math.min(length - done, pageSize - offset);
+			countPhysicalWrite();
+			Page page = pageForWrite(position + done, count);
+			page.reference().fill(offset, count, value);
+			page.modified((int) Math.min(count, Integer.MAX_VALUE));
+			done += count;
+		}
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation drops whole pages if the implementation allocates pages on first use,
+	 * skips pages that are known to contain only zeros without mapping them,
+	 * and releases the range in the page otherwise</p>
+	 */
+	@Override
+	public ByteSpace release(long position, long length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		countLogicalWrite(length);
+		long done = 0;
+		while (done < length) {
+			long address = position + done;
+			long offset = getOffset(address);
+			long count = Math.min(length - done, pageSize - offset);
+			long pageNumber = address >>> pageShift;
+			if (count == pageSize && drop(pageNumber)) {
+				// page storage freed
+			} else if (!isResident(pageNumber) && isUnmappedHole(address, count)) {
+				// already zero
+			} else {
+				countPhysicalWrite();
+				Page page = pageForWrite(address, count);
+				page.reference().release(offset, count);
+				page.modified((int) Math.min(count, Integer.MAX_VALUE));
+			}
+			done += count;
+		}
+		return this;
+	}
+	
+	/**
+	 * drops a page from the page cache and frees its storage,
+	 * unless snapshots or slices may still need the page
+	 */
+	private boolean drop(long pageNumber) {
+		if (!isDiscardable() || snapshots.length > 0) {
+			return false;
+		}
+		Page page = pages.get(pageNumber);
+		try {
+			if (page != null) {
+				if (page.shared || !pages.remove(pageNumber, page)) {
+					return false;
+				}
+				if (isBounded()) {
+					clock.remove(page);
+				}
+				page.clean();
+				counters.accumulate(SpaceCounters.RESIDENTBYTES, -residentBytes());
+				unmap(pageNumber, page.space());
+			}
+			discard(pageNumber);
+			return true;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@FunctionalInterface
+	private interface PageAccess {
+		void access(ByteSpace page, long offset, int index, int count);
+	}
+	
+	@FunctionalInterface
+	private interface ElementAccess {
+		void access(long position, int index);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the page, 
+	 * unless the value crosses a page boundary</p>
+	 */
+	@Override
+	public boolean compareAndSwapLong(long position, long expected, long update) {
+		long offset = getOffset(position);
+		if (offset + Long.BYTES > pageSize) {
+			return ByteSpace.super.compareAndSwapLong(position, expected, update);
+		} else {
+			countWrite(Long.BYTES);
+			Page page = pageForWrite(position, Long.BYTES);
+			boolean result = page.reference().compareAndSwapLong(offset, expected, update);
+			if (result) {
+				page.modified(Long.BYTES);
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the page, 
+	 * unless the value crosses a page boundary</p>
+	 */
+	@Override
+	public boolean compareAndSwapInt(long position, int expected, int update) {
+		long offset = getOffset(position);
+		if (offset + Integer.BYTES > pageSize) {
+			return ByteSpace.super.compareAndSwapInt(position, expected, update);
+		} else {
+			countWrite(Integer.BYTES);
+			Page page = pageForWrite(position, Integer.BYTES);
+			boolean result = page.reference().compareAndSwapInt(offset, expected, update);
+			if (result) {
+				page.modified(Integer.BYTES);
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the page, 
+	 * unless the value crosses a page boundary</p>
+	 */
+	@Override
+	public long getAndAddLong(long position, long delta) {
+		long offset = getOffset(position);
+		if (offset + Long.BYTES > pageSize) {
+			return ByteSpace.super.getAndAddLong(position, delta);
+		} else {
+			countWrite(Long.BYTES);
+			Page page = pageForWrite(position, Long.BYTES);
+			long result = page.reference().getAndAddLong(offset, delta);
+			page.modified(Long.BYTES);
+			return result;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the page, 
+	 * unless the value crosses a page boundary</p>
+	 */
+	@Override
+	public long getLongVolatile(long position) {
+		long offset = getOffset(position);
+		if (offset + Long.BYTES > pageSize) {
+			return ByteSpace.super.getLongVolatile(position);
+		} else {
+			countRead(Long.BYTES);
+			return getPage(position).getLongVolatile(offset);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation delegates to the page, 
+	 * unless the value crosses a page boundary</p>
+	 */
+	@Override
+	public ByteSpace putLongOrdered(long position, long in) {
+		long offset = getOffset(position);
+		if (offset + Long.BYTES > pageSize) {
+			return ByteSpace.super.putLongOrdered(position, in);
+		} else {
+			countWrite(Long.BYTES);
+			Page page = pageForWrite(position, Long.BYTES);
+			page.reference().putLongOrdered(offset, in);
+			page.modified(Long.BYTES);
+			return this;
+		}
+	}
+	
 	/**
 	 * 	{@inheritDoc}
 	 * 
-	 *  <p>This implementation calls force on all cached pages</p>
+	 *  <p>This implementation calls force on all pages modified since the previous force,
+	 *  followed by {@link #sync()} if any page was modified.
+	 *  Concurrent calls are coalesced: a call waiting for a running flush is served by the next flush,
+	 *  which covers all calls that arrived in the meantime</p>
 	 *  
 	 */
 	@Override
 	public ByteSpace force() throws IOException {
-		for (ByteSpace space : map.values()) {
-			space.force();
+		long covered;
+		synchronized (flushLock) {
+			long ticket = ++forceRequests;
+			while (flushing) {
+				try {
+					flushLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+				if (forcesCompleted >= ticket) {
+					return this;
+				}
+			}
+			flushing = true;
+			covered = forceRequests;
+		}
+		boolean success = false;
+		try {
+			flush();
+			success = true;
+		} finally {
+			synchronized (flushLock) {
+				flushing = false;
+				if (success) {
+					forcesCompleted = covered;
+				}
+				flushLock.notifyAll();
+			}
+		}
+		return this;
+	}
+	
+	private void flush() throws IOException {
+		counters.increment(SpaceCounters.FLUSHES);
+		boolean modified = false;
+		for (Page page : pages.values()) {
+			modified |= flush(page);
+		}
+		if (modified || unsynced) {
+			unsynced = false;
+			try {
+				sync();
+			} catch (IOException | RuntimeException e) {
+				unsynced = true;
+				throw e;
+			}
+		}
+	}
+	
+	private boolean flush(Page page) throws IOException {
+		if (!page.clean()) {
+			return false;
+		}
+		try {
+			page.space().force();
+		} catch (IOException | RuntimeException e) {
+			page.modified(0);
+			throw e;
+		}
+		return true;
+	}
+	
+	private void flushBehind() {
+		flushScheduled.set(false);
+		PageTable<Page> pages = this.pages;
+		if (pages == null) {
+			return;
+		}
+		synchronized (flushLock) {
+			if (flushing) {
+				// a running force writes the pages
+				return;
+			}
+			// a force arriving now waits until the pages written here are marked unsynced
+			flushing = true;
+		}
+		counters.increment(SpaceCounters.BACKGROUNDFLUSHES);
+		try {
+			for (Page page : pages.values()) {
+				if (flush(page)) {
+					unsynced = true;
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// failed pages stay dirty, the error is reported by the next force
+		} finally {
+			synchronized (flushLock) {
+				flushing = false;
+				flushLock.notifyAll();
+			}
+		}
+	}
+	
+	private void written(int bytes) {
+		unflushed.add(bytes);
+		if (unflushed.sum() > flushBudget && flushScheduled.compareAndSet(false, true)) {
+			ScheduledExecutorService executor = flusher;
+			try {
+				if (executor != null) {
+					executor.execute(this::flushBehind);
+				}
+			} catch (RejectedExecutionException e) {
+				// flusher stopped concurrently
+				flushScheduled.set(false);
+			}
+		}
+	}
+	
+	/**
+	 * starts a background thread forcing modified pages.
+	 * 
+	 * <p>The flusher forces the modified pages one by one every <code>period</code>,
+	 * and as soon as the number of bytes written since the pages were last forced exceeds <code>budget</code>.
+	 * This spreads the write back over time, so a subsequent {@link #force()} has less work to do,
+	 * but does not replace it: only force guarantees that all changes, including file metadata, are durable.
+	 * A force arriving during a background flush waits for it to complete.
+	 * The written bytes are only tracked while the flusher is running</p>
+	 * 
+	 * @param period the time between two background flushes
+	 * @param unit the time unit of the period
+	 * @param budget the number of unflushed bytes that triggers an early flush
+	 * @return this space
+	 * @throws IllegalArgumentException
+	 * 		if period or budget is not positive
+	 * @throws IllegalStateException
+	 * 		if a flusher is already running
+	 */
+	public synchronized PagedSpace startFlusher(long period, TimeUnit unit, long budget) {
+		if (period <= 0 || budget <= 0) {
+			throw new IllegalArgumentException("Illegal flusher period or budget: " + period + " " + budget);
+		}
+		if (flusher != null) {
+			throw new IllegalStateException("Flusher already running");
 		}
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "obelix-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.flushBudget = budget;
+		this.flusher = executor;
+		executor.scheduleWithFixedDelay(this::flushBehind, period, period, unit);
 		return this;
 	}
 	
+	/**
+	 * stops the background flusher, waiting for a running flush to complete.
+	 * Does nothing if no flusher is running
+	 * 
+	 * @return this space
+	 * @throws InterruptedIOException
+	 * 		if interrupted while waiting
+	 */
+	public synchronized PagedSpace stopFlusher() throws InterruptedIOException {
+		ScheduledExecutorService executor = flusher;
+		if (executor == null) {
+			return this;
+		}
+		flusher = null;
+		// do not interrupt, an interrupted channel force closes the channel
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		return this;
+	}
+	
+	/**
+	 * warms up the given range, using a thread per available processor
+	 * 
+	 * @param position start of the range
+	 * @param length length of the range
+	 * @return this space
+	 * @throws InterruptedIOException
+	 * 		if interrupted while waiting
+	 * @see #warmup(Stream, int, LongConsumer)
+	 */
+	public PagedSpace warmup(long position, long length) throws InterruptedIOException {
+		return warmup(Stream.of(new AbstractMap.SimpleImmutableEntry<>(position, length)), Runtime.getRuntime().availableProcessors(), bytes -> {});
+	}
+	
+	/**
+	 * warms up the given ranges, so later accesses do not suffer from page faults.
+	 * 
+	 * <p> Pages covering the ranges are mapped, and the ranges are touched in parallel every 4K,
+	 * faulting the operating system pages in as <code>MappedByteBuffer.load</code> does for a whole mapping.
+	 * Ranges that are known to contain only zeros without mapping, like regions beyond the end of a file, are skipped.
+	 * The method returns when all ranges are warmed up.</p>
+	 * 
+	 * <p> Pages may still be evicted by the page cache of a bounded space, or by the operating system under memory pressure.</p>
+	 * 
+	 * @param ranges stream of entries with the start of a range as key and its length as value
+	 * @param parallelism the number of threads touching the ranges
+	 * @param progress called with the total number of bytes warmed up so far, after every chunk of at most 1MB.
+	 * 		Called concurrently from the warming threads
+	 * @return this space
+	 * @throws IllegalArgumentException
+	 * 		if parallelism is not positive or a length is negative
+	 * @throws InterruptedIOException
+	 * 		if interrupted while waiting
+	 */
+	public PagedSpace warmup(Stream<Map.Entry<Long, Long>> ranges, int parallelism, LongConsumer progress) throws InterruptedIOException {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Illegal parallelism: " + parallelism);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "obelix-warmup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		AtomicLong warmed = new AtomicLong();
+		int chunkShift = Math.min(pageShift, WARMUPSHIFT);
+		List<Future<Long>> chunks = ranges
+			.flatMap(range -> chunks(range.getKey(), range.getValue(), chunkShift))
+			.map(chunk -> executor.submit(() -> {
+				long checksum = touch(chunk.getKey(), chunk.getValue());
+				progress.accept(warmed.addAndGet(chunk.getValue()));
+				return checksum;
+			}))
+			.collect(Collectors.toList());
+		// do not interrupt, an interrupted thread mapping a page closes the channel
+		executor.shutdown();
+		try {
+			for (Future<Long> chunk : chunks) {
+				chunk.get();
+			}
+		} catch (InterruptedException e) {
+			chunks.forEach(chunk -> chunk.cancel(false));
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			chunks.forEach(chunk -> chunk.cancel(false));
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		return this;
+	}
+	
+	private static Stream<Map.Entry<Long, Long>> chunks(long position, long length, int chunkShift) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		if (length == 0) {
+			return Stream.empty();
+		}
+		long end = position + length;
+		return LongStream.rangeClosed(position >>> chunkShift, (end - 1) >>> chunkShift)
+			.mapToObj(chunk -> {
+				long start = Math.max(position, chunk << chunkShift);
+				return new AbstractMap.SimpleImmutableEntry<>(start, Math.min(end - start, (1L << chunkShift) - (start - (chunk << chunkShift))));
+			});
+	}
+	
+	/**
+	 * touches a range within a page every 4K, and returns a checksum so the reads can not be optimized away
+	 */
+	private long touch(long position, long length) {
+		if (!isResident(position >>> pageShift) && isUnmappedHole(position, length)) {
+			return 0;
+		}
+		ByteSpace page = getPage(position);
+		long offset = getOffset(position);
+		long checksum = 0;
+		for (long i = 0 ; i < length ; i += PREFETCHSTEP) {
+			checksum += page.get(offset + i);
+		}
+		return checksum + page.get(offset + length - 1);
+	}
+	
+	/**
+	 * returns an estimate of the number of bytes written but not yet forced.
+	 * Only writes while a flusher is running are tracked.
+	 * 
+	 * @return the number of unflushed bytes
+	 */
+	public long unflushedBytes() {
+		return unflushed.sum();
+	}
+	
+	/**
+	 * called by force after the modified pages are forced.
+	 * The default implementation does nothing.
+	 * 
+	 * @throws IOException
+	 * 		if an IO error occurs
+	 */
+	protected void sync() throws IOException {
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * 
-	 * <p> This implementation calls close on all cached pages, and drops the cache</p>
+	 * <p> This implementation stops the flusher, calls close on all cached pages, and drops the cache</p>
 	 * 
 	 */
 	@Override
 	public void close() throws IOException {
-		for (ByteSpace space : map.values()) {
-			space.close();
+		stopFlusher();
+		for (Page page : pages.values()) {
+			page.space().close();
 		}
-		map = null;
+		pages = null;
+		clock.clear();
 	}
 	
 	/**
@@ -330,12 +1307,20 @@ public abstract class PagedSpace implements ByteSpace {
 		return pageShift;
 	}
 	
+	/**
+	 * returns the maximum number of resident pages
+	 * @return the page budget, <code>Integer.MAX_VALUE</code> if unbounded
+	 */
+	public int getMaxPages() {
+		return maxPages;
+	}
+	
 	/**
 	 * returns the number of pages currently in the page cache
 	 * @return the number of mapped pages
 	 */
 	public int pageCount() {
-		return map.size();
+		return pages.size();
 	}
 	
 	/**
@@ -351,15 +1336,423 @@ public abstract class PagedSpace implements ByteSpace {
 		return counters.counts();
 	}
 	
+	/**
+	 * enables or disables the read and write statistics.
+	 * 
+	 * <p>Updating the read and write counters costs more than the page lookup itself,
+	 * so performance critical users may want to disable them.
+	 * Page fault and eviction counters are always maintained.
+	 * Statistics are enabled by default</p>
+	 * 
+	 * @param enabled true to maintain read and write counters
+	 * @return this space
+	 */
+	public PagedSpace statistics(boolean enabled) {
+		this.statistics = enabled;
+		return this;
+	}
+	
+	/**
+	 * sets the readahead window for chunked scans.
+	 * 
+	 * <p>When enabled, {@link #get(long, long, int)} prefetches up to <code>window</code> bytes
+	 * beyond the last returned chunk in the background, by touching every 4K block.
+	 * For memory mapped spaces this moves page faults out of the scanning thread.
+	 * Prefetch hits and misses are counted.
+	 * Readahead is disabled by default</p>
+	 * 
+	 * @param window the readahead window in bytes, 0 to disable readahead
+	 * @return this space
+	 * @throws IllegalArgumentException
+	 * 		if window is negative
+	 */
+	public PagedSpace readahead(long window) {
+		if (window < 0) {
+			throw new IllegalArgumentException("Illegal readahead window: " + window);
+		}
+		this.readahead = window;
+		return this;
+	}
+	
+	/**
+	 * sets the byte order of this space.
+	 * 
+	 * <p>Native byte order avoids swapping bytes on every multi byte access,
+	 * but the resulting data is not portable to platforms with another native byte order.
+	 * As the order is not stored in the backing store, persistent spaces must always be opened with the same order. 
+	 * Subclasses must map pages with this byte order.
+	 * The default is big endian</p>
+	 * 
+	 * @param order the byte order
+	 * @return this space
+	 * @throws IllegalStateException
+	 * 		if pages are already mapped
+	 */
+	public PagedSpace order(ByteOrder order) {
+		if (pageCount() > 0) {
+			throw new IllegalStateException("Pages already mapped");
+		}
+		this.order = order;
+		return this;
+	}
+	
+	@Override
+	public ByteOrder order() {
+		return order;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>This implementation returns a slice of the page if the slice does not cross a page boundary.
+	 * Reads go to the page directly, writes are tracked as writes to this space,
+	 * so they mark the page modified and copy the block to open snapshots</p>
+	 */
 	@Override 
 	public ByteSpace slice(long shift, long capacity) {
 		long offset = getOffset(shift);
 		if (offset + capacity > pageSize) {
 			return ByteSpace.super.slice(shift, capacity);
 		} else {
-			return getPage(shift).slice(offset, capacity);
+			Page page = page(shift);
+			// the page storage must not be dropped while the slice is in use
+			page.share();
+			return new PageSlice(page, shift, page.reference().slice(offset, capacity));
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>The returned snapshot does not copy any data when created.
+	 * Instead the first write to a block after the snapshot copies the block,
+	 * so the cost is proportional to the amount of data modified while the snapshot is open.
+	 * Writes running concurrently with this call may or may not be visible in the snapshot.</p>
+	 */
+	@Override
+	public ByteSpace snapshot() {
+		SnapshotSpace snapshot = new SnapshotSpace(this, snapshotShift);
+		synchronized (blockLocks) {
+			SnapshotSpace[] current = snapshots;
+			SnapshotSpace[] update = new SnapshotSpace[current.length + 1];
+			System.arraycopy(current, 0, update, 0, current.length);
+			update[current.length] = snapshot;
+			snapshots = update;
+		}
+		return snapshot;
+	}
+	
+	void release(SnapshotSpace snapshot) {
+		synchronized (blockLocks) {
+			snapshots = Stream.of(snapshots)
+				.filter(each -> each != snapshot)
+				.toArray(SnapshotSpace[]::new);
+		}
+	}
+	
+	/**
+	 * returns the number of open snapshots
+	 * @return the number of open snapshots
+	 */
+	public int snapshotCount() {
+		return snapshots.length;
+	}
+	
+	Object blockLock(long block) {
+		return blockLocks[(int) (block & (SNAPSHOTLOCKS - 1))];
+	}
+	
+	private void preserve(long position, long length) {
+		SnapshotSpace[] current = snapshots;
+		long last = (position + length - 1) >>> snapshotShift;
+		for (long block = position >>> snapshotShift ; block <= last ; block++) {
+			preserve(block, current);
+		}
+	}
+	
+	private void preserve(long block, SnapshotSpace[] current) {
+		if (isPreserved(block, current)) {
+			return;
 		}
+		synchronized (blockLock(block)) {
+			byte[] copy = null;
+			for (SnapshotSpace snapshot : current) {
+				if (!snapshot.isPreserved(block)) {
+					if (copy == null) {
+						copy = new byte[1 << snapshotShift];
+						long position = block << snapshotShift;
+						page(position).reference().get(getOffset(position), copy, 0, copy.length);
+					}
+					snapshot.preserve(block, copy);
+				}
+			}
+		}
+	}
+	
+	private static boolean isPreserved(long block, SnapshotSpace[] snapshots) {
+		for (SnapshotSpace snapshot : snapshots) {
+			if (!snapshot.isPreserved(block)) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
+	/**
+	 * slice of a page, tracking writes so that flushes and snapshots see them
+	 */
+	private final class PageSlice extends WrappedSpace {
+		
+		private final Page page;
+		private final long base;
+		
+		PageSlice(Page page, long base, ByteSpace slice) {
+			super(slice);
+			this.page = page;
+			this.base = base;
+		}
+		
+		@Override
+		long translate(long position, int length) {
+			// the page slice checks the bounds
+			return position;
+		}
+		
+		private void beforeWrite(long position, long length) {
+			if (snapshots.length > 0 && length > 0 && Long.compareUnsigned(position + length, capacity()) <= 0) {
+				preserve(base + position, length);
+			}
+		}
+		
+		private void written(long length) {
+			page.modified((int) Math.min(length, Integer.MAX_VALUE));
+		}
+		
+		@Override
+		public ByteSpace put(long position, byte[] bytes, int start, int length) {
+			beforeWrite(position, length);
+			super.put(position, bytes, start, length);
+			written(length);
+			return this;
+		}
+		
+		@Override 
+		public ByteSpace put(long position, ByteBuffer buffer) {
+			int length = buffer.remaining();
+			beforeWrite(position, length);
+			super.put(position, buffer);
+			written(length);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace put(long position, byte in) {
+			beforeWrite(position, Byte.BYTES);
+			super.put(position, in);
+			written(Byte.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putShort(long position, short in) {
+			beforeWrite(position, Short.BYTES);
+			super.putShort(position, in);
+			written(Short.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putChar(long position, char in) {
+			beforeWrite(position, Character.BYTES);
+			super.putChar(position, in);
+			written(Character.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putInt(long position, int in) {
+			beforeWrite(position, Integer.BYTES);
+			super.putInt(position, in);
+			written(Integer.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putFloat(long position, float in) {
+			beforeWrite(position, Float.BYTES);
+			super.putFloat(position, in);
+			written(Float.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putLong(long position, long in) {
+			beforeWrite(position, Long.BYTES);
+			super.putLong(position, in);
+			written(Long.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putDouble(long position, double in) {
+			beforeWrite(position, Double.BYTES);
+			super.putDouble(position, in);
+			written(Double.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putLongs(long position, long[] longs, int start, int length) {
+			int bytes = PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES);
+			beforeWrite(position, bytes);
+			super.putLongs(position, longs, start, length);
+			written(bytes);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putInts(long position, int[] ints, int start, int length) {
+			int bytes = PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES);
+			beforeWrite(position, bytes);
+			super.putInts(position, ints, start, length);
+			written(bytes);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace putDoubles(long position, double[] doubles, int start, int length) {
+			int bytes = PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES);
+			beforeWrite(position, bytes);
+			super.putDoubles(position, doubles, start, length);
+			written(bytes);
+			return this;
+		}
+		
+		@Override
+		public boolean compareAndSwapLong(long position, long expected, long update) {
+			beforeWrite(position, Long.BYTES);
+			boolean result = super.compareAndSwapLong(position, expected, update);
+			if (result) {
+				written(Long.BYTES);
+			}
+			return result;
+		}
+		
+		@Override
+		public boolean compareAndSwapInt(long position, int expected, int update) {
+			beforeWrite(position, Integer.BYTES);
+			boolean result = super.compareAndSwapInt(position, expected, update);
+			if (result) {
+				written(Integer.BYTES);
+			}
+			return result;
+		}
+		
+		@Override
+		public long getAndAddLong(long position, long delta) {
+			beforeWrite(position, Long.BYTES);
+			long result = super.getAndAddLong(position, delta);
+			written(Long.BYTES);
+			return result;
+		}
+		
+		@Override
+		public ByteSpace putLongOrdered(long position, long in) {
+			beforeWrite(position, Long.BYTES);
+			super.putLongOrdered(position, in);
+			written(Long.BYTES);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace fill(long position, long length, byte value) {
+			beforeWrite(position, length);
+			super.fill(position, length, value);
+			written(length);
+			return this;
+		}
+		
+		@Override
+		public ByteSpace release(long position, long length) {
+			beforeWrite(position, length);
+			super.release(position, length);
+			written(length);
+			return this;
+		}
+		
+		@Override 
+		public ByteSpace slice(long shift, long capacity) {
+			if (Long.compareUnsigned(shift + capacity, capacity()) > 0) {
+				throw new IllegalArgumentException("Invalid shift: " + shift + " or capacity: " + capacity);
+			}
+			return new PageSlice(page, base + shift, space().slice(shift, capacity));
+		}
+	
+	}
+	
+	private final class Page {
+		
+		private final long number;
+		private final ByteSpace space;
+		private volatile boolean referenced = true;
+		private volatile boolean dirty;
+		private volatile boolean shared;
+		private final LongAdder written = new LongAdder();
+		
+		Page(long number, ByteSpace space) {
+			this.number = number;
+			this.space = space;
+		}
+		
+		long number() {
+			return number;
+		}
+		
+		ByteSpace space() {
+			return space;
+		}
+		
+		ByteSpace reference() {
+			// avoid a shared cache line write if the bit is already set
+			if (!referenced) {
+				referenced = true;
+			}
+			return space;
+		}
+		
+		boolean clearReference() {
+			boolean result = referenced;
+			referenced = false;
+			return result;
+		}
+		
+		void modified(int bytes) {
+			// called after the write, so a concurrent clean can not lose it
+			if (!dirty) {
+				dirty = true;
+			}
+			if (flusher != null) {
+				written.add(bytes);
+				written(bytes);
+			}
+		}
+		
+		void share() {
+			shared = true;
+		}
+		
+		/**
+		 * clears the dirty bit, 
+		 * returns true if the page was modified
+		 */
+		boolean clean() {
+			if (!dirty) {
+				return false;
+			}
+			dirty = false;
+			unflushed.add(-written.sumThenReset());
+			return true;
+		}
+	}
 	
 }
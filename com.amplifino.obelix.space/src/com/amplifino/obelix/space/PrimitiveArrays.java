@@ -0,0 +1,21 @@
+package com.amplifino.obelix.space;
+
+/**
+ * Helper for bulk primitive array accessors
+ * 
+ */
+final class PrimitiveArrays {
+	
+	private PrimitiveArrays() {
+	}
+	
+	/**
+	 * checks the array range, and returns the number of bytes occupied by <code>length</code> elements of <code>size</code> bytes
+	 */
+	static int byteLength(int arrayLength, int start, int length, int size) {
+		if (start < 0 || length < 0 || start > arrayLength - length || length > Integer.MAX_VALUE / size) {
+			throw new IllegalArgumentException("" + start + "-" + length);
+		}
+		return length * size;
+	}
+}
@@ -0,0 +1,80 @@
+package com.amplifino.obelix.space;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import com.amplifino.counters.Accumulators;
+
+/**
+ * Readahead for a sequential scan
+ * 
+ * <p> An instance tracks a single scan over <code>[start, end)</code>.
+ * Every access extends the prefetched region to <code>window</code> bytes beyond the accessed range,
+ * by touching the region every <code>step</code> bytes on a shared pool of daemon threads.
+ * The space determines what touching means, e.g. faulting in a mapped page or loading a buffer pool frame.</p>
+ * 
+ * <p> An access is counted as a prefetch hit if the accessed range was prefetched completely,
+ * and as a miss otherwise. Prefetching is best effort, errors are ignored.</p>
+ * 
+ */
+final class Readahead {
+	
+	private static final ExecutorService PREFETCHER = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+		Thread thread = new Thread(runnable, "obelix-prefetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	private final long end;
+	private final long window;
+	private final int step;
+	private final LongConsumer touch;
+	private final Accumulators<SpaceCounters> counters;
+	private final AtomicLong requested;
+	private final AtomicLong loaded;
+	
+	Readahead(long start, long end, long window, int step, LongConsumer touch, Accumulators<SpaceCounters> counters) {
+		this.end = end;
+		this.window = window;
+		this.step = step;
+		this.touch = touch;
+		this.counters = counters;
+		this.requested = new AtomicLong(start);
+		this.loaded = new AtomicLong(start);
+	}
+	
+	void access(long position, int length) {
+		long limit = position + length;
+		counters.increment(limit <= loaded.get() ? SpaceCounters.PREFETCHHITS : SpaceCounters.PREFETCHMISSES);
+		long target = Math.min(end, limit + window);
+		while (true) {
+			long current = requested.get();
+			if (current >= target) {
+				return;
+			}
+			if (requested.compareAndSet(current, target)) {
+				prefetch(Math.max(current, limit), target);
+				return;
+			}
+		}
+	}
+	
+	private void prefetch(long from, long to) {
+		if (from >= to) {
+			loaded.accumulateAndGet(to, Math::max);
+			return;
+		}
+		PREFETCHER.execute(() -> {
+			try {
+				for (long position = from - (from % step) ; position < to ; position += step) {
+					touch.accept(Math.max(position, from));
+				}
+				loaded.accumulateAndGet(to, Math::max);
+			} catch (RuntimeException e) {
+				// prefetching is best effort, e.g. the space may have been closed
+			}
+		});
+	}
+}
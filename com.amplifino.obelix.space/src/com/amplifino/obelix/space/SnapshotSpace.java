@@ -0,0 +1,226 @@
+package com.amplifino.obelix.space;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.function.BiFunction;
+import java.util.function.LongFunction;
+
+/**
+ * Read only point-in-time view of a PagedSpace
+ * 
+ * <p> The view does not copy any data when created.
+ * Instead the paged space copies a block to all open snapshots before the first write to the block.
+ * A read from the snapshot uses the copy if present, and reads through to the paged space otherwise.
+ * Reads through are serialized with the copy on write by a lock per block.</p>
+ * 
+ */
+final class SnapshotSpace implements ByteSpace {
+	
+	private final PagedSpace space;
+	private final int blockShift;
+	private final int blockSize;
+	private final long blockMask;
+	private final PageTable<byte[]> copies = new PageTable<>();
+	private volatile boolean closed;
+	
+	SnapshotSpace(PagedSpace space, int blockShift) {
+		this.space = space;
+		this.blockShift = blockShift;
+		this.blockSize = 1 << blockShift;
+		this.blockMask = blockSize - 1;
+	}
+	
+	boolean isPreserved(long block) {
+		return copies.get(block) != null;
+	}
+	
+	void preserve(long block, byte[] copy) {
+		copies.computeIfAbsent(block, key -> copy);
+	}
+	
+	int preservedBlocks() {
+		return copies.size();
+	}
+	
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Snapshot released");
+		}
+	}
+	
+	private <T> T read(long position, int length, BiFunction<ByteBuffer, Integer, T> fromCopy, LongFunction<T> fromSpace) {
+		checkOpen();
+		int offset = (int) (position & blockMask);
+		if (offset + length > blockSize) {
+			return fromCopy.apply(ByteBuffer.wrap(getBytes(position, length)).order(space.order()), 0);
+		}
+		long block = position >>> blockShift;
+		byte[] copy = copies.get(block);
+		if (copy == null) {
+			synchronized (space.blockLock(block)) {
+				copy = copies.get(block);
+				if (copy == null) {
+					return fromSpace.apply(position);
+				}
+			}
+		}
+		return fromCopy.apply(ByteBuffer.wrap(copy).order(space.order()), offset);
+	}
+	
+	@Override
+	public ByteSpace get(long position, byte[] bytes, int start, int length) {
+		checkOpen();
+		if (start < 0 || length < 0 || start + length > bytes.length) {
+			throw new IllegalArgumentException();
+		}
+		while (length > 0) {
+			long block = position >>> blockShift;
+			int offset = (int) (position & blockMask);
+			int chunk = Math.min(length, blockSize - offset);
+			byte[] copy = copies.get(block);
+			if (copy == null) {
+				synchronized (space.blockLock(block)) {
+					copy = copies.get(block);
+					if (copy == null) {
+						space.get(position, bytes, start, chunk);
+					}
+				}
+			}
+			if (copy != null) {
+				System.arraycopy(copy, offset, bytes, start, chunk);
+			}
+			position += chunk;
+			start += chunk;
+			length -= chunk;
+		}
+		return this;
+	}
+	
+	@Override
+	public byte[] getBytes(long position, int length) {
+		byte[] bytes = new byte[length];
+		get(position, bytes);
+		return bytes;
+	}
+	
+	@Override
+	public ByteSpace get(long position, ByteBuffer buffer) {
+		buffer.put(getBytes(position, buffer.remaining()));
+		return this;
+	}
+	
+	@Override
+	public ByteBuffer get(long position, int length) {
+		return ByteBuffer.wrap(getBytes(position, length)).order(space.order());
+	}
+	
+	@Override
+	public byte get(long position) {
+		return read(position, Byte.BYTES, ByteBuffer::get, space::get);
+	}
+	
+	@Override
+	public short getShort(long position) {
+		return read(position, Short.BYTES, ByteBuffer::getShort, space::getShort);
+	}
+	
+	@Override
+	public char getChar(long position) {
+		return read(position, Character.BYTES, ByteBuffer::getChar, space::getChar);
+	}
+	
+	@Override
+	public int getInt(long position) {
+		return read(position, Integer.BYTES, ByteBuffer::getInt, space::getInt);
+	}
+	
+	@Override
+	public long getLong(long position) {
+		return read(position, Long.BYTES, ByteBuffer::getLong, space::getLong);
+	}
+	
+	@Override
+	public float getFloat(long position) {
+		return read(position, Float.BYTES, ByteBuffer::getFloat, space::getFloat);
+	}
+	
+	@Override
+	public double getDouble(long position) {
+		return read(position, Double.BYTES, ByteBuffer::getDouble, space::getDouble);
+	}
+	
+	@Override
+	public ByteSpace put(long position, byte[] bytes, int start, int length) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace put(long position, ByteBuffer buffer) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace put(long position, byte in) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace putShort(long position, short in) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace putChar(long position, char in) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace putInt(long position, int in) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace putLong(long position, long in) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace putFloat(long position, float in) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace putDouble(long position, double in) {
+		throw new ReadOnlyBufferException();
+	}
+	
+	@Override
+	public ByteSpace force() {
+		return this;
+	}
+	
+	/**
+	 * releases the snapshot, dropping all copies.
+	 * The paged space is not closed
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			space.release(this);
+			copies.clear();
+		}
+	}
+	
+	@Override
+	public long capacity() {
+		return space.capacity();
+	}
+
+	@Override
+	public ByteOrder order() {
+		return space.order();
+	}
+
+}
@@ -19,8 +19,44 @@ public enum SpaceCounters {
 	BYTESREAD,
 	BYTESWRITTEN,
 	/**
-	 * Counter indicating how often a page was not cached
+	 * Counter indicating how often a page was not cached,
+	 * i.e. the number of page-ins
 	 */
-	PAGEFAULTS;
+	PAGEFAULTS,
+	/**
+	 * Counter indicating how often a page was evicted from the page cache
+	 */
+	EVICTIONS,
+	/**
+	 * Number of bytes in resident pages.
+	 * Spaces whose pages are spaces themselves, as {@link DirectorySpace}, leave this counter to their pages
+	 */
+	RESIDENTBYTES,
+	/**
+	 * Counter indicating how often a scan found the requested range prefetched
+	 */
+	PREFETCHHITS,
+	/**
+	 * Counter indicating how often a scan with readahead enabled found the requested range not (yet) prefetched
+	 */
+	PREFETCHMISSES,
+	/**
+	 * Counter indicating how often modified pages were flushed. 
+	 * Concurrent force calls are coalesced into a single flush
+	 */
+	FLUSHES,
+	/**
+	 * Counter indicating how often the background flusher ran
+	 */
+	BACKGROUNDFLUSHES,
+	/**
+	 * Counter indicating how often an access found the page in the buffer pool
+	 */
+	POOLHITS,
+	/**
+	 * Counter indicating how often an access to a page not admitted to the buffer pool
+	 * was passed to the backing space
+	 */
+	BYPASSES;
 
 }
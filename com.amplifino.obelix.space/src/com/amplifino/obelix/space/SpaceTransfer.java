@@ -0,0 +1,211 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Bulk transfer between ByteSpaces
+ * 
+ * <p> If both spaces are backed by a shared file channel, bytes are transferred with FileChannel.transferTo,
+ * leaving the copy to the operating system.
+ * Otherwise the range is split recursively and copied in parallel in chunks of 1MB.
+ * Ranges that are holes in both spaces are skipped without reading,
+ * and zero 4K blocks are not written if the target already contains zeros, to keep sparse targets sparse.</p>
+ * 
+ * <p> Hole detection is conservative. Java offers no API to find holes inside a sparse file,
+ * so only regions beyond the end of file, missing page files and non resident memory pages are detected.</p>
+ * 
+ */
+final class SpaceTransfer {
+	
+	private static final int CHUNKSHIFT = 20;
+	private static final long CHUNK = 1L << CHUNKSHIFT;
+	private static final int BLOCK = 4096;
+	
+	private SpaceTransfer() {
+	}
+	
+	static void transfer(ByteSpace source, long position, long length, ByteSpace target, long targetPosition) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		while (source instanceof WrappedSpace) {
+			WrappedSpace wrapped = (WrappedSpace) source;
+			wrapped.translate(position + length, 0);
+			position = wrapped.translate(position, 0);
+			source = wrapped.space();
+		}
+		while (target instanceof WrappedSpace) {
+			WrappedSpace wrapped = (WrappedSpace) target;
+			wrapped.translate(targetPosition + length, 0);
+			targetPosition = wrapped.translate(targetPosition, 0);
+			target = wrapped.space();
+		}
+		// views of the same space overlap if their translated ranges do
+		if (source == target && position < targetPosition + length && targetPosition < position + length) {
+			throw new IllegalArgumentException("Overlapping ranges");
+		}
+		long transferred = channelTransfer(source, position, length, target, targetPosition);
+		if (transferred < length) {
+			ForkJoinPool.commonPool().invoke(new Copy(source, position + transferred, length - transferred, target, targetPosition + transferred));
+		}
+	}
+	
+	private static long channelTransfer(ByteSpace source, long position, long length, ByteSpace target, long targetPosition) {
+		FileChannel from = channel(source);
+		FileChannel to = channel(target);
+		if (from == null || to == null || from == to) {
+			return 0;
+		}
+		try {
+			long count = Math.max(0, Math.min(length, from.size() - position));
+			long done = 0;
+			Lock lock = target instanceof FileChannelSpace ? ((FileChannelSpace) target).writeGuard() : null;
+			if (lock != null) {
+				lock.lock();
+			}
+			try {
+				synchronized (to) {
+					to.position(targetPosition);
+					while (done < count) {
+						long bytes = from.transferTo(position + done, count - done, to);
+						if (bytes <= 0) {
+							break;
+						}
+						done += bytes;
+					}
+				}
+			} finally {
+				if (lock != null) {
+					lock.unlock();
+				}
+			}
+			if (done > 0 && target instanceof PagedSpace) {
+				// the pages do not know about the transferred bytes
+				((PagedSpace) target).writtenBehind();
+			}
+			return done;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static FileChannel channel(ByteSpace space) {
+		if (space instanceof FileChannelSpace) {
+			return ((FileChannelSpace) space).channel();
+		}
+		if (space instanceof MappedFileSpace) {
+			return ((MappedFileSpace) space).sharedChannel();
+		}
+		return null;
+	}
+	
+	/**
+	 * tests if the given range is known to contain only zeros, without reading it
+	 */
+	static boolean isHole(ByteSpace space, long position, long length) {
+		if (space instanceof PagedSpace) {
+			return ((PagedSpace) space).isHole(position, length);
+		}
+		if (space instanceof FileChannelSpace) {
+			return ((FileChannelSpace) space).isHole(position);
+		}
+		if (space instanceof WrappedSpace) {
+			WrappedSpace wrapped = (WrappedSpace) space;
+			return isHole(wrapped.space(), wrapped.translate(position, 0), length);
+		}
+		return false;
+	}
+	
+	private static boolean isZero(ByteBuffer buffer) {
+		return isZero(buffer, buffer.position(), buffer.limit());
+	}
+	
+	private static boolean isZero(ByteBuffer buffer, int position, int limit) {
+		while (position + Long.BYTES <= limit) {
+			if (buffer.getLong(position) != 0) {
+				return false;
+			}
+			position += Long.BYTES;
+		}
+		while (position < limit) {
+			if (buffer.get(position++) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@SuppressWarnings("serial")
+	private static final class Copy extends RecursiveAction {
+		
+		private final ByteSpace source;
+		private final long position;
+		private final long length;
+		private final ByteSpace target;
+		private final long targetPosition;
+		
+		Copy(ByteSpace source, long position, long length, ByteSpace target, long targetPosition) {
+			this.source = source;
+			this.position = position;
+			this.length = length;
+			this.target = target;
+			this.targetPosition = targetPosition;
+		}
+		
+		@Override
+		protected void compute() {
+			boolean sourceHole = isHole(source, position, length);
+			if (sourceHole && isHole(target, targetPosition, length)) {
+				return;
+			}
+			if (length <= CHUNK) {
+				copy(sourceHole);
+			} else {
+				// split on a chunk boundary
+				long split = ((position + length / 2) >>> CHUNKSHIFT << CHUNKSHIFT) - position;
+				if (split <= 0) {
+					split = CHUNK - (position & (CHUNK - 1));
+				}
+				invokeAll(
+					new Copy(source, position, split, target, targetPosition),
+					new Copy(source, position + split, length - split, target, targetPosition + split));
+			}
+		}
+		
+		private void copy(boolean sourceHole) {
+			ByteBuffer buffer = sourceHole ? ByteBuffer.allocate((int) length) : source.get(position, (int) length);
+			int start = buffer.position();
+			int run = -1;
+			for (int offset = 0 ; offset < length ; offset += BLOCK) {
+				int size = (int) Math.min(BLOCK, length - offset);
+				if (isSkippable(buffer, start + offset, size, targetPosition + offset)) {
+					if (run >= 0) {
+						write(buffer, start, run, offset);
+						run = -1;
+					}
+				} else if (run < 0) {
+					run = offset;
+				}
+			}
+			if (run >= 0) {
+				write(buffer, start, run, (int) length);
+			}
+		}
+		
+		private boolean isSkippable(ByteBuffer buffer, int offset, int size, long targetPosition) {
+			return isZero(buffer, offset, offset + size) && 
+				(isHole(target, targetPosition, size) || isZero(target.get(targetPosition, size)));
+		}
+		
+		private void write(ByteBuffer buffer, int start, int from, int to) {
+			ByteBuffer source = buffer.duplicate();
+			source.limit(start + to).position(start + from);
+			target.put(targetPosition + from, source);
+		}
+	}
+}
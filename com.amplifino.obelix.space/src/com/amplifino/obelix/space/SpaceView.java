@@ -0,0 +1,61 @@
+package com.amplifino.obelix.space;
+
+/**
+ * View on a range of a ByteSpace
+ * 
+ * <p> A view adds a bias to all addresses, and optionally limits addresses to a capacity.
+ * Shifting or limiting a view returns a new view on the underlying space,
+ * folding both biases and limits into a single pair,
+ * so any chain of shifts and limits costs a single translation and bounds check.
+ * Slicing a view slices the underlying space, so slices of a paged space within a page resolve to the page.</p>
+ * 
+ * <p> A view without limit reports the capacity of the underlying space.</p>
+ * 
+ */
+class SpaceView extends WrappedSpace {
+	
+	static final long UNLIMITED = -1L;
+	
+	private final long bias;
+	private final long limit;
+	
+	SpaceView(ByteSpace space, long bias, long limit) {
+		super(space);
+		this.bias = bias;
+		this.limit = limit;
+	}
+	
+	@Override
+	long translate(long position, int length) {
+		if (limit != UNLIMITED && Long.compareUnsigned(limit, position + length) < 0) {
+			throw new IllegalArgumentException("Invalid position: " + position + " or length: " + length);
+		}
+		return position + bias;
+	}
+	
+	@Override
+	public long capacity() {
+		return limit == UNLIMITED ? space().capacity() : limit;
+	}
+	
+	@Override
+	public ByteSpace shift(long value) {
+		if (value == 0) {
+			return this;
+		}
+		if (limit == UNLIMITED) {
+			return space().shift(bias + value);
+		}
+		long newLimit = Long.compareUnsigned(value, limit) > 0 ? 0 : limit - value;
+		return space().slice(bias + value, newLimit);
+	}
+	
+	@Override
+	public ByteSpace capacity(long newCapacity) {
+		if (Long.compareUnsigned(newCapacity, capacity()) > 0) {
+			throw new IllegalArgumentException("New capacity: " + newCapacity + " exceeds current capacity: " + capacity());
+		}
+		return newCapacity == capacity() ? this : space().slice(bias, newCapacity);
+	}
+
+}
@@ -0,0 +1,138 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Byte Space striped across multiple directories
+ * 
+ * <p> This implementation distributes fixed size stripes round robin over a number of DirectorySpaces,
+ * similar to RAID-0. Stripe <code>n</code> is stored in directory <code>n % directories</code>,
+ * at offset <code>(n / directories) * stripeSize</code> of that directory's space.
+ * With the directories on different devices, scans and parallel writes use the aggregate bandwidth of the devices.</p>
+ * 
+ * <p> The number and order of the directories must not change between runs,
+ * as this determines the location of the data.</p>
+ * 
+ */
+public final class StripedSpace extends PagedSpace {
+	
+	private final DirectorySpace[] spaces;
+	
+	private StripedSpace(List<Path> directories, int stripeShift) {
+		super(stripeShift);
+		if (stripeShift < 12 || stripeShift > 30) {
+			throw new IllegalArgumentException("Illegal stripe shift: " + stripeShift);
+		}
+		if (directories.isEmpty()) {
+			throw new IllegalArgumentException("No directories");
+		}
+		this.spaces = directories.stream()
+			.map(DirectorySpace::on)
+			.toArray(DirectorySpace[]::new);
+	}
+	
+	/**
+	 * returns a Byte Space striped across the given directories with a stripe size of 1MB
+	 * Each directory is backed by a DirectorySpace with the default generator
+	 * @param directories the directories backing the space
+	 * @return almost infinite space
+	 * @throws IllegalArgumentException
+	 * 		if directories is empty
+	 */
+	public static StripedSpace on(List<Path> directories) {
+		return new StripedSpace(directories, 20);
+	}
+	
+	/**
+	 * returns a Byte Space striped across the given directories with a stripe size of <code>2^stripeShift</code>
+	 * Each directory is backed by a DirectorySpace with the default generator
+	 * @param directories the directories backing the space
+	 * @param stripeShift the stripe shift in bits
+	 * @return almost infinite space
+	 * @throws IllegalArgumentException
+	 * 		if directories is empty, or stripeShift is less than 12 or greater than 30
+	 */
+	public static StripedSpace on(List<Path> directories, int stripeShift) {
+		return new StripedSpace(directories, stripeShift);
+	}
+	
+	private DirectorySpace space(long stripe) {
+		return spaces[(int) Long.remainderUnsigned(stripe, spaces.length)];
+	}
+	
+	private long offset(long stripe) {
+		return Long.divideUnsigned(stripe, spaces.length) << getPageShift();
+	}
+	
+	@Override
+	protected ByteSpace map(long stripe, long stripeSize) {
+		// a stripe never crosses a memory mapped region of the directory space
+		return space(stripe).slice(offset(stripe), stripeSize);
+	}
+	
+	@Override
+	boolean isUnmappedHole(long position, long length) {
+		long last = (position + length - 1) >>> getPageShift();
+		for (long stripe = position >>> getPageShift() ; stripe <= last ; stripe++) {
+			if (!isResident(stripe) && !space(stripe).isHole(offset(stripe), getPageSize())) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * forces the directory spaces,
+	 * as forcing a stripe slice does not necessarily force the file
+	 */
+	@Override
+	protected void sync() throws IOException {
+		for (DirectorySpace space : spaces) {
+			space.force();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p> This implementation also closes the directory spaces</p>
+	 */
+	@Override
+	public void close() throws IOException {
+		super.close();
+		for (DirectorySpace space : spaces) {
+			space.close();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p> This implementation also sets the byte order of the directory spaces</p>
+	 */
+	@Override
+	public StripedSpace order(ByteOrder order) {
+		super.order(order);
+		for (DirectorySpace space : spaces) {
+			space.order(order);
+		}
+		return this;
+	}
+	
+	/**
+	 * returns the number of directories
+	 * @return the stripe width
+	 */
+	public int getWidth() {
+		return spaces.length;
+	}
+	
+	@Override
+	public long capacity() {
+		return -1L;
+	}
+
+}
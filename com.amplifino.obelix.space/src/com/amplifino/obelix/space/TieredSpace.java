@@ -0,0 +1,149 @@
+package com.amplifino.obelix.space;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte Space keeping hot pages in memory in front of a cold backing space
+ * 
+ * <p> The hot tier is a buffer pool of direct memory frames, the cold tier any ByteSpace,
+ * typically a FileChannelSpace or MappedFileSpace. The tiered space uses the byte order of the cold tier.
+ * A page is promoted to the hot tier when its access frequency reaches the promotion threshold.
+ * Until then, accesses go to the cold tier directly, so a scan over cold data does not flush the hot tier.
+ * When the hot tier is full, promoting a page demotes a page selected by the CLOCK algorithm,
+ * writing it back to the cold tier if modified.</p>
+ * 
+ * <p> Access frequencies are estimated with a fixed size table of counters indexed by a hash of the page number,
+ * halved periodically so the estimate follows changes in the workload.
+ * The counts report {@link SpaceCounters#POOLHITS} for accesses served by the hot tier,
+ * {@link SpaceCounters#BYPASSES} for accesses served by the cold tier,
+ * and {@link SpaceCounters#PAGEFAULTS} for promotions.</p>
+ * 
+ */
+public final class TieredSpace extends BufferPoolSpace {
+	
+	private static final int MAXFREQUENCIES = 1 << 22;
+	
+	private final ByteSpace cold;
+	private final int promotion;
+	private final AtomicIntegerArray frequencies;
+	private final int frequencyMask;
+	private final AtomicLong samples = new AtomicLong();
+	
+	private TieredSpace(ByteSpace cold, int pageShift, int frames, int promotion) {
+		super(pageShift, frames, cold.order());
+		if (promotion <= 0) {
+			throw new IllegalArgumentException("Illegal promotion threshold: " + promotion);
+		}
+		this.cold = cold;
+		this.promotion = promotion;
+		int size = Integer.highestOneBit((int) Math.min(frames * 16L, MAXFREQUENCIES) - 1) << 1;
+		this.frequencies = new AtomicIntegerArray(size);
+		this.frequencyMask = size - 1;
+	}
+	
+	/**
+	 * creates a ByteSpace caching 1024 64K pages of the cold space in memory,
+	 * promoting a page on its second access
+	 * 
+	 * @param cold the space holding all pages
+	 * @return the tiered space
+	 */
+	public static TieredSpace on(ByteSpace cold) {
+		return on(cold, 16, 1024, 2);
+	}
+	
+	/**
+	 * creates a ByteSpace caching <code>frames</code> pages of the cold space in memory
+	 * 
+	 * @param cold the space holding all pages
+	 * @param pageShift the page shift
+	 * @param frames the number of pages in the hot tier
+	 * @param promotion the number of accesses to a page in the cold tier that promote the page
+	 * @return the tiered space
+	 * @throws IllegalArgumentException
+	 * 		if pageShift is smaller than 9 or greater than 30, or frames or promotion is not positive
+	 */
+	public static TieredSpace on(ByteSpace cold, int pageShift, int frames, int promotion) {
+		return new TieredSpace(cold, pageShift, frames, promotion);
+	}
+	
+	@Override
+	protected boolean admit(long page) {
+		if (promotion == 1) {
+			return true;
+		}
+		if (samples.incrementAndGet() % (frequencies.length() * 8) == 0) {
+			age();
+		}
+		int index = (int) (page ^ (page >>> 32)) * 0x9E3779B9 & frequencyMask;
+		return frequencies.incrementAndGet(index) >= promotion;
+	}
+	
+	private void age() {
+		for (int i = 0 ; i < frequencies.length() ; i++) {
+			frequencies.set(i, frequencies.get(i) >>> 1);
+		}
+	}
+	
+	@Override
+	protected ByteSpace bypass() {
+		return cold;
+	}
+	
+	private int length(long position) {
+		long capacity = cold.capacity();
+		if (Long.compareUnsigned(capacity, position + getPageSize()) >= 0) {
+			return getPageSize();
+		}
+		return (int) Math.max(0, capacity - position);
+	}
+	
+	@Override
+	protected void readPage(long page, ByteBuffer buffer) throws IOException {
+		long position = page << getPageShift();
+		ByteBuffer target = buffer.duplicate();
+		target.limit(length(position));
+		cold.get(position, target);
+		// bytes beyond the cold tier capacity are zero filled by the pool
+		buffer.position(target.position());
+	}
+	
+	@Override
+	protected void writePage(long page, ByteBuffer buffer) throws IOException {
+		long position = page << getPageShift();
+		buffer.limit(length(position));
+		cold.put(position, buffer);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementations writes back all modified pages, and forces the cold tier
+	 */
+	@Override
+	public TieredSpace force() throws IOException {
+		super.force();
+		cold.force();
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * This implementations writes back all modified pages, and closes the cold tier
+	 */
+	@Override
+	public void close() throws IOException {
+		super.close();
+		cold.close();
+	}
+	
+	@Override
+	public long capacity() {
+		return cold.capacity();
+	}
+
+}
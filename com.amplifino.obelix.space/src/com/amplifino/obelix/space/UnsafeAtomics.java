@@ -0,0 +1,109 @@
+package com.amplifino.obelix.space;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import sun.misc.Unsafe;
+
+/**
+ * Atomic operations on ByteBuffer memory
+ * 
+ * <p> Java 8 offers no atomic access to ByteBuffer content, so this class uses sun.misc.Unsafe.
+ * If Unsafe is not available, {@link #isAvailable()} returns false and callers must fall back to locking.</p>
+ * 
+ * <p> Values are stored in the byte order of the space, callers pass whether values must be swapped to native order.
+ * Callers are responsible for alignment, see {@link #isAligned(long, int)}</p>
+ * 
+ */
+final class UnsafeAtomics {
+	
+	private static final Unsafe UNSAFE;
+	private static final long ADDRESS;
+	private static final long ARRAYBASE;
+	
+	static {
+		Unsafe unsafe = null;
+		long address = -1;
+		long arrayBase = -1;
+		try {
+			Field field = Unsafe.class.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = (Unsafe) field.get(null);
+			address = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+			arrayBase = unsafe.arrayBaseOffset(byte[].class);
+		} catch (Throwable e) {
+			unsafe = null;
+		}
+		UNSAFE = unsafe;
+		ADDRESS = address;
+		ARRAYBASE = arrayBase;
+	}
+	
+	private UnsafeAtomics() {
+	}
+	
+	static boolean isAvailable() {
+		return UNSAFE != null;
+	}
+	
+	/**
+	 * returns the object to pass as base to the other methods, null for direct buffers
+	 */
+	static Object base(ByteBuffer buffer) {
+		return buffer.hasArray() ? buffer.array() : null;
+	}
+	
+	/**
+	 * returns the offset of the first buffer byte relative to the base, the absolute address for direct buffers
+	 */
+	static long baseOffset(ByteBuffer buffer) {
+		return buffer.hasArray() ? ARRAYBASE + buffer.arrayOffset() : UNSAFE.getLong(buffer, ADDRESS);
+	}
+	
+	static boolean isAligned(long offset, int size) {
+		return (offset & (size - 1)) == 0;
+	}
+	
+	/**
+	 * tests if values in the given byte order must be swapped to native order
+	 */
+	static boolean isSwapped(ByteOrder order) {
+		return order != ByteOrder.nativeOrder();
+	}
+	
+	private static long order(long value, boolean swap) {
+		return swap ? Long.reverseBytes(value) : value;
+	}
+	
+	private static int order(int value, boolean swap) {
+		return swap ? Integer.reverseBytes(value) : value;
+	}
+	
+	static boolean compareAndSwapLong(Object base, long offset, long expected, long update, boolean swap) {
+		return UNSAFE.compareAndSwapLong(base, offset, order(expected, swap), order(update, swap));
+	}
+	
+	static boolean compareAndSwapInt(Object base, long offset, int expected, int update, boolean swap) {
+		return UNSAFE.compareAndSwapInt(base, offset, order(expected, swap), order(update, swap));
+	}
+	
+	static long getAndAddLong(Object base, long offset, long delta, boolean swap) {
+		while (true) {
+			long current = UNSAFE.getLongVolatile(base, offset);
+			long value = order(current, swap);
+			if (UNSAFE.compareAndSwapLong(base, offset, current, order(value + delta, swap))) {
+				return value;
+			}
+		}
+	}
+	
+	static long getLongVolatile(Object base, long offset, boolean swap) {
+		return order(UNSAFE.getLongVolatile(base, offset), swap);
+	}
+	
+	static void putLongOrdered(Object base, long offset, long value, boolean swap) {
+		UNSAFE.putOrderedLong(base, offset, order(value, swap));
+	}
+}
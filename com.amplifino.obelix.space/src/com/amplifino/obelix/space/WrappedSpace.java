@@ -2,6 +2,7 @@ package com.amplifino.obelix.space;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 abstract class WrappedSpace implements ByteSpace {
 
@@ -124,6 +125,104 @@ abstract class WrappedSpace implements ByteSpace {
 		return this;
 	}
 	
+	@Override
+	public ByteSpace getLongs(long position, long[] longs, int start, int length) {
+		space.getLongs(translate(position, PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES)), longs, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putLongs(long position, long[] longs, int start, int length) {
+		space.putLongs(translate(position, PrimitiveArrays.byteLength(longs.length, start, length, Long.BYTES)), longs, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace getInts(long position, int[] ints, int start, int length) {
+		space.getInts(translate(position, PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES)), ints, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putInts(long position, int[] ints, int start, int length) {
+		space.putInts(translate(position, PrimitiveArrays.byteLength(ints.length, start, length, Integer.BYTES)), ints, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace getDoubles(long position, double[] doubles, int start, int length) {
+		space.getDoubles(translate(position, PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES)), doubles, start, length);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace putDoubles(long position, double[] doubles, int start, int length) {
+		space.putDoubles(translate(position, PrimitiveArrays.byteLength(doubles.length, start, length, Double.BYTES)), doubles, start, length);
+		return this;
+	}
+	
+	@Override
+	public boolean compareAndSwapLong(long position, long expected, long update) {
+		return space.compareAndSwapLong(translate(position, Long.BYTES), expected, update);
+	}
+	
+	@Override
+	public boolean compareAndSwapInt(long position, int expected, int update) {
+		return space.compareAndSwapInt(translate(position, Integer.BYTES), expected, update);
+	}
+	
+	@Override
+	public long getAndAddLong(long position, long delta) {
+		return space.getAndAddLong(translate(position, Long.BYTES), delta);
+	}
+	
+	@Override
+	public long getLongVolatile(long position) {
+		return space.getLongVolatile(translate(position, Long.BYTES));
+	}
+	
+	@Override
+	public ByteSpace putLongOrdered(long position, long in) {
+		space.putLongOrdered(translate(position, Long.BYTES), in);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace fill(long position, long length, byte value) {
+		space.fill(translateRange(position, length), length, value);
+		return this;
+	}
+	
+	@Override
+	public ByteSpace release(long position, long length) {
+		space.release(translateRange(position, length), length);
+		return this;
+	}
+	
+	private long translateRange(long position, long length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Illegal length: " + length);
+		}
+		// validate the end of the range, as lengths may exceed an int
+		translate(position + length, 0);
+		return translate(position, 0);
+	}
+	
+	@Override
+	public int compare(long position, byte[] key, int start, int length) {
+		return space.compare(translate(position, PrimitiveArrays.byteLength(key.length, start, length, Byte.BYTES)), key, start, length);
+	}
+	
+	@Override
+	public int mismatch(long position, ByteSpace other, long otherPosition, int length) {
+		return space.mismatch(translate(position, length), other, otherPosition, length);
+	}
+	
+	@Override
+	public long hash64(long position, int length) {
+		return space.hash64(translate(position, length), length);
+	}
+	
 	@Override
 	public ByteSpace force() throws IOException {
 		space.force();
@@ -140,8 +239,13 @@ abstract class WrappedSpace implements ByteSpace {
 		return space.capacity();
 	}
 	
+	@Override
+	public ByteOrder order() {
+		return space.order();
+	}
+	
 	protected ByteSpace space() {
-		return space();
+		return space;
 	}
 	
 	@Override 
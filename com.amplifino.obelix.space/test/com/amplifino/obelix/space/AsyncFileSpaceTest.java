@@ -0,0 +1,66 @@
+package com.amplifino.obelix.space;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+public class AsyncFileSpaceTest {
+	
+	@Test
+	public void writeReadTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "async.map");
+		Files.deleteIfExists(path);
+		try (AsyncByteSpace space = AsyncFileSpace.of(path)) {
+			test(space);
+		}
+		try (AsyncByteSpace space = AsyncFileSpace.of(path)) {
+			verify(space);
+			ByteBuffer beyond = space.getAsync(1L << 30, 16).join();
+			assertEquals(16, beyond.remaining());
+			assertEquals(0, beyond.getLong(8));
+		}
+	}
+	
+	@Test
+	public void adapterTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "asyncadapter.map");
+		Files.deleteIfExists(path);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try (AsyncByteSpace space = AsyncByteSpace.of(FileChannelSpace.of(path), executor)) {
+			test(space);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private void test(AsyncByteSpace space) throws IOException {
+		List<CompletableFuture<Void>> writes = LongStream.range(0, 1000)
+			.mapToObj(i -> space.putAsync(i * 4096, ByteBuffer.allocate(Long.BYTES).putLong(0, i)))
+			.collect(Collectors.toList());
+		writes.forEach(CompletableFuture::join);
+		space.force();
+		verify(space);
+		assertEquals(1000, space.counts().get(SpaceCounters.LOGICALWRITES));
+	}
+	
+	private void verify(AsyncByteSpace space) {
+		List<CompletableFuture<ByteBuffer>> reads = LongStream.range(0, 1000)
+			.mapToObj(i -> space.getAsync(i * 4096, Long.BYTES))
+			.collect(Collectors.toList());
+		for (int i = 0 ; i < reads.size(); i++) {
+			assertEquals(i, reads.get(i).join().getLong());
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.amplifino.obelix.space;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+public class BufferedFileSpaceTest {
+	
+	@Test
+	public void writeReadTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "buffered.map");
+		Files.deleteIfExists(path);
+		ByteSpace space = BufferedFileSpace.of(path);
+		space.putLong(0, Long.MAX_VALUE);
+		long limit = (1L << 40) - Long.BYTES;
+		space.putLong(limit , Long.MIN_VALUE);
+		space.putLong(65535, -1L);
+		assertEquals(Long.MAX_VALUE,  space.getLong(0));
+		assertEquals(Long.MIN_VALUE,  space.getLong(limit));
+		assertEquals(-1L,  space.getLong(65535));
+		space.close();
+		space = BufferedFileSpace.of(path);
+		assertEquals(Long.MAX_VALUE,  space.getLong(0));
+		assertEquals(Long.MIN_VALUE,  space.getLong(limit));
+		assertEquals(-1L,  space.getLong(65535));
+		space.close();
+	}
+	
+	@Test
+	public void evictionTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "bufferedeviction.map");
+		Files.deleteIfExists(path);
+		int pageSize = 1 << 12;
+		BufferedFileSpace space = BufferedFileSpace.of(path, 12, 4);
+		LongStream.range(0, 1024)
+			.parallel()
+			.forEach(i -> space.putLong(i * pageSize + 8, i));
+		LongStream.range(0, 1024)
+			.parallel()
+			.forEach(i -> assertEquals(i, space.getLong(i * pageSize + 8)));
+		assertTrue(space.counts().get(SpaceCounters.EVICTIONS) >= 1020);
+		assertEquals(4 * pageSize, space.counts().get(SpaceCounters.RESIDENTBYTES));
+		space.close();
+		ByteSpace reopened = FileChannelSpace.of(path);
+		LongStream.range(0, 1024)
+			.forEach(i -> assertEquals(i, reopened.getLong(i * pageSize + 8)));
+		reopened.close();
+	}
+	
+	@Test
+	public void readaheadTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "bufferedreadahead.map");
+		Files.deleteIfExists(path);
+		int pageSize = 1 << 12;
+		BufferedFileSpace space = BufferedFileSpace.of(path, 12, 64).readahead(16 * pageSize);
+		for (long i = 0 ; i < 1024 ; i++) {
+			space.putLong(i * pageSize, i);
+		}
+		long sum = space.get(0, 1024L * pageSize, pageSize)
+			.mapToLong(buffer -> buffer.getLong(0))
+			.sum();
+		assertEquals(1023 * 1024 / 2, sum);
+		assertEquals(1024, space.counts().get(SpaceCounters.PREFETCHHITS) + space.counts().get(SpaceCounters.PREFETCHMISSES));
+		space.close();
+	}
+	
+	@Test
+	public void concurrentMissTest() throws Exception {
+		CountDownLatch slowRead = new CountDownLatch(1);
+		BufferPoolSpace space = new BufferPoolSpace(12, 4) {
+			@Override
+			protected void readPage(long page, ByteBuffer buffer) throws IOException {
+				if (page == 0) {
+					try {
+						slowRead.await();
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					}
+				}
+				buffer.putLong(page);
+			}
+			
+			@Override
+			protected void writePage(long page, ByteBuffer buffer) throws IOException {
+			}
+			
+			@Override
+			public long capacity() {
+				return Long.MAX_VALUE;
+			}
+		};
+		int pageSize = space.getPageSize();
+		CompletableFuture<Long> first = CompletableFuture.supplyAsync(() -> space.getLong(0));
+		CompletableFuture<Long> second = CompletableFuture.supplyAsync(() -> space.getLong(0));
+		while (space.counts().get(SpaceCounters.PAGEFAULTS) == 0) {
+			Thread.sleep(1);
+		}
+		// a slow read does not stall misses on other pages
+		assertEquals(1, space.getLong(pageSize));
+		assertEquals(2, space.getLong(2 * pageSize));
+		slowRead.countDown();
+		assertEquals(0, (long) first.get(10, TimeUnit.SECONDS));
+		assertEquals(0, (long) second.get(10, TimeUnit.SECONDS));
+		assertEquals(3, space.counts().get(SpaceCounters.PAGEFAULTS));
+	}
+}
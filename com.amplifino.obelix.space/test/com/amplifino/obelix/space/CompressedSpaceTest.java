@@ -0,0 +1,41 @@
+package com.amplifino.obelix.space;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class CompressedSpaceTest {
+	
+	@Test
+	public void writeReadTest() throws IOException {
+		HeapSpace backing = new HeapSpace();
+		CompressedSpace space = CompressedSpace.on(backing, 1024, 12, 8, PageCodec.deflate());
+		long length = 256 * space.getPageSize();
+		for (long position = 0 ; position < length ; position += Long.BYTES) {
+			space.putLong(position, position / 64);
+		}
+		space.putLong(1023L * space.getPageSize(), -1);
+		for (long position = 0 ; position < length ; position += Long.BYTES) {
+			assertEquals(position / 64, space.getLong(position));
+		}
+		assertTrue(space.counts().get(SpaceCounters.EVICTIONS) > 0);
+		space.force();
+		assertTrue(space.footprint() < length / 3);
+		CompressedSpace reopened = CompressedSpace.on(backing, 1024, 12, 8, PageCodec.deflate());
+		for (long position = 0 ; position < length ; position += Long.BYTES) {
+			assertEquals(position / 64, reopened.getLong(position));
+		}
+		assertEquals(-1, reopened.getLong(1023L * space.getPageSize()));
+		assertEquals(0, reopened.getLong(512L * space.getPageSize()));
+		reopened.close();
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void capacityTest() throws IOException {
+		CompressedSpace space = CompressedSpace.on(new HeapSpace(), 16, 12, 8, PageCodec.deflate());
+		space.getLong(16L * space.getPageSize());
+	}
+}
@@ -1,9 +1,15 @@
 package com.amplifino.obelix.space;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
 
 import org.junit.Test;
 
@@ -24,4 +30,79 @@ public class DirectorySpaceTest {
 		space.close();
 	}
 
+	@Test
+	public void transferTest() throws IOException {
+		DirectorySpace source = DirectorySpace.on(emptyDirectory("transfersource"));
+		Path targetDirectory = emptyDirectory("transfertarget");
+		DirectorySpace target = DirectorySpace.on(targetDirectory);
+		long pageSize = source.getPageSize();
+		source.putLong(0, 1);
+		source.putLong(3 * pageSize + 16, 2);
+		// four 8TB pages, mostly holes
+		source.transferTo(0, 4 * pageSize, target, 0);
+		assertEquals(1, target.getLong(0));
+		assertEquals(2, target.getLong(3 * pageSize + 16));
+		assertFalse(Files.exists(targetDirectory.resolve("h1")));
+		assertFalse(Files.exists(targetDirectory.resolve("h2")));
+		source.close();
+		target.close();
+	}
+	
+	@Test
+	public void openFilesTest() throws IOException, InterruptedException {
+		Path directory = emptyDirectory("openfiles");
+		DirectorySpace space = DirectorySpace.on(directory, 2).precreate(true);
+		long pageSize = space.getPageSize();
+		for (long page = 0 ; page < 4 ; page++) {
+			space.putLong(page * pageSize + 8, page);
+		}
+		assertTrue(space.pageCount() <= 2);
+		assertTrue(space.counts().get(SpaceCounters.EVICTIONS) >= 2);
+		// page files count their own mapped memory
+		assertEquals(0, space.counts().get(SpaceCounters.RESIDENTBYTES));
+		for (long page = 0 ; page < 4 ; page++) {
+			assertEquals(page, space.getLong(page * pageSize + 8));
+		}
+		// the file of the page following the last opened page is created in the background
+		for (int i = 0 ; i < 100 && !Files.exists(directory.resolve("h4")) ; i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(Files.exists(directory.resolve("h4")));
+		// a precreated page still reads as a hole
+		assertTrue(space.isHole(4 * pageSize, pageSize));
+		space.close();
+		space = DirectorySpace.on(directory, 1);
+		for (long page = 3 ; page >= 0 ; page--) {
+			assertEquals(page, space.getLong(page * pageSize + 8));
+		}
+		assertEquals(1, space.pageCount());
+		space.close();
+	}
+	
+	@Test
+	public void concurrentEvictionTest() throws IOException {
+		DirectorySpace space = DirectorySpace.on(emptyDirectory("concurrenteviction"), 1);
+		long pageSize = space.getPageSize();
+		// pages are evicted while other threads use them
+		LongStream.range(0, 100_000)
+			.parallel()
+			.forEach(i -> space.putLong((i % 4) * pageSize + (i / 4) * Long.BYTES, i));
+		LongStream.range(0, 100_000)
+			.parallel()
+			.forEach(i -> assertEquals(i, space.getLong((i % 4) * pageSize + (i / 4) * Long.BYTES)));
+		assertTrue(space.counts().get(SpaceCounters.EVICTIONS) > 0);
+		space.close();
+	}
+	
+	private Path emptyDirectory(String name) throws IOException {
+		Path directory = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix", name);
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		return directory;
+	}
+
 }
@@ -4,6 +4,11 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
 
 import org.junit.Test;
 
@@ -23,4 +28,50 @@ public class FileChannelSpaceTest {
 		assertEquals(Long.MIN_VALUE,  space.getLong(limit));
 		space.close();
 	}
+	
+	@Test
+	public void releaseTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "release.map");
+		Files.deleteIfExists(path);
+		ByteSpace space = FileChannelSpace.of(path);
+		space.fill(0, 1 << 20, (byte) 1);
+		assertEquals(1 << 20, Files.size(path));
+		space.release(100, 100);
+		assertEquals(0, space.get(150));
+		assertEquals(1, space.get(200));
+		space.release(1 << 19, 1 << 20);
+		assertEquals(1 << 19, Files.size(path));
+		assertEquals(0, space.getLong((1 << 19) + 8));
+		space.close();
+	}
+	
+	@Test
+	public void concurrentReleaseTest() throws Exception {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "concurrentrelease.map");
+		Files.deleteIfExists(path);
+		ByteSpace space = FileChannelSpace.of(path);
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		CompletableFuture<Void> releases = CompletableFuture.runAsync(() -> {
+			try {
+				for (int i = 0 ; i < 10_000 ; i++) {
+					barrier.await();
+					space.release(4096, 4096);
+					barrier.await();
+				}
+			} catch (InterruptedException | BrokenBarrierException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		for (long i = 0 ; i < 10_000 ; i++) {
+			space.putLong(4096, i);
+			barrier.await();
+			// a write beyond the released range survives the release
+			space.putLong(8192, i);
+			barrier.await();
+			assertEquals(i, space.getLong(8192));
+			space.release(4096, 8192);
+		}
+		releases.get();
+		space.close();
+	}
 }
@@ -4,7 +4,16 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
 import org.junit.Test;
 
 
@@ -43,4 +52,77 @@ public class MappedSpaceTest {
 			space.close();
 		}
 	}
+	
+	@Test
+	public void evictionTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "evict.map");
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.SPARSE);
+		MappedFileSpace space = new MappedFileSpace(channel, MapMode.READ_WRITE, 16, 4);
+		for (long page = 0 ; page < 16 ; page++) {
+			space.putLong(page << 16, page);
+		}
+		assertTrue(space.pageCount() <= 4);
+		for (long page = 0 ; page < 16 ; page++) {
+			assertEquals(page, space.getLong(page << 16));
+		}
+		assertTrue(space.counts().get(SpaceCounters.EVICTIONS) >= 12);
+		assertEquals(space.pageCount() * space.getPageSize(), space.counts().get(SpaceCounters.RESIDENTBYTES));
+		space.close();
+	}
+	
+	@Test
+	public void evictDirtyTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "evictdirty.map");
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.SPARSE);
+		MappedFileSpace space = new MappedFileSpace(channel, MapMode.READ_WRITE, 12, 2);
+		space.startFlusher(1, TimeUnit.HOURS, 1 << 20);
+		for (long page = 0 ; page < 10 ; page++) {
+			space.putLong(page << 12, page);
+		}
+		// evicted pages no longer count as unflushed
+		assertTrue(space.unflushedBytes() <= 2 * Long.BYTES);
+		space.force();
+		assertEquals(0, space.unflushedBytes());
+		for (long page = 0 ; page < 10 ; page++) {
+			assertEquals(page, space.getLong(page << 12));
+		}
+		space.close();
+	}
+	
+	@Test
+	public void warmupTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "warmup.map");
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.SPARSE);
+		MappedFileSpace space = new MappedFileSpace(channel, MapMode.READ_WRITE, 16);
+		space.putLong((8L << 16) - Long.BYTES, 1L);
+		space.close();
+		channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		space = new MappedFileSpace(channel, MapMode.READ_WRITE, 16);
+		AtomicLong progress = new AtomicLong();
+		space.warmup(Stream.of(
+				new AbstractMap.SimpleImmutableEntry<>(100L, 3L << 16),
+				new AbstractMap.SimpleImmutableEntry<>(5L << 16, 1L << 16),
+				new AbstractMap.SimpleImmutableEntry<>(100L << 16, 1L << 16)), 
+			2, bytes -> progress.accumulateAndGet(bytes, Math::max));
+		assertEquals(5L << 16, progress.get());
+		// the range beyond the end of file is skipped
+		assertEquals(5, space.pageCount());
+		assertEquals(1L, space.getLong((8L << 16) - Long.BYTES));
+		space.close();
+	}
+	
+	@Test
+	public void readaheadTest() throws IOException {
+		PagedSpace space = MappedFileSpace.temp("readaheadtest").readahead(1 << 20);
+		int chunk = 1 << 16;
+		for (long i = 0 ; i < 256 ; i++) {
+			space.putLong(i * chunk, i);
+		}
+		long sum = space.get(0, 256L * chunk, chunk)
+			.mapToLong(buffer -> buffer.getLong(0))
+			.sum();
+		assertEquals(255 * 256 / 2, sum);
+		assertEquals(256, space.counts().get(SpaceCounters.PREFETCHHITS) + space.counts().get(SpaceCounters.PREFETCHMISSES));
+		space.close();
+	}
 }
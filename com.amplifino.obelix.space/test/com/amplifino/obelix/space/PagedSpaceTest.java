@@ -0,0 +1,685 @@
+package com.amplifino.obelix.space;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class PagedSpaceTest {
+	
+	@Test
+	public void pageTableTest() throws IOException {
+		PagedSpace space = new HeapSpace(12);
+		long sparse = Long.MAX_VALUE & ~4095L;
+		LongStream.range(0, 10_000)
+			.parallel()
+			.forEach(i -> {
+				space.putLong(i << 12, i);
+				space.putLong(sparse - (i << 12), -i);
+			});
+		LongStream.range(0, 10_000)
+			.parallel()
+			.forEach(i -> {
+				assertEquals(i, space.getLong(i << 12));
+				assertEquals(-i, space.getLong(sparse - (i << 12)));
+			});
+		assertEquals(20_000, space.pageCount());
+		assertEquals(20_000, space.counts().get(SpaceCounters.PAGEFAULTS));
+		space.close();
+	}
+	
+	@Test
+	public void atomicTest() throws IOException {
+		atomicTest(new HeapSpace(12));
+		atomicTest(new OffHeapSpace(12));
+		atomicTest(new HeapSpace(12).shift(4));
+	}
+	
+	private void atomicTest(ByteSpace space) throws IOException {
+		LongStream.range(0, 100_000)
+			.parallel()
+			.forEach(i -> {
+				space.getAndAddLong(4096 + 8 * (i % 16), 1);
+				while (true) {
+					int current = space.getInt(8192);
+					if (space.compareAndSwapInt(8192, current, current + 1)) {
+						break;
+					}
+				}
+			});
+		for (int i = 0 ; i < 16 ; i++) {
+			assertEquals(100_000 / 16, space.getLong(4096 + 8 * i));
+		}
+		assertEquals(100_000, space.getInt(8192));
+		space.putLongOrdered(0, Long.MIN_VALUE + 1);
+		assertEquals(Long.MIN_VALUE + 1, space.getLongVolatile(0));
+		assertTrue(space.compareAndSwapLong(0, Long.MIN_VALUE + 1, 1L << 56));
+		assertFalse(space.compareAndSwapLong(0, Long.MIN_VALUE + 1, 0));
+		assertEquals(1, space.get(0));
+		// page crossing values fall back to locking
+		assertEquals(0, space.getAndAddLong(4092, 1L << 40));
+		assertEquals(1L << 40, space.getLong(4092));
+		space.close();
+	}
+	
+	@Test
+	public void transferTest() throws IOException {
+		HeapSpace source = new HeapSpace(12);
+		source.putLong(0, 1);
+		source.putLong(1L << 40, 2);
+		OffHeapSpace target = new OffHeapSpace(12);
+		target.putLong(1L << 20, 3);
+		source.transferTo(0, (1L << 40) + Long.BYTES, target.shift(4096), 0);
+		assertEquals(1, target.getLong(4096));
+		assertEquals(2, target.getLong((1L << 40) + 4096));
+		assertEquals(0, target.getLong(1L << 20));
+		assertEquals(3, target.pageCount());
+		source.close();
+		target.close();
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void overlappingTransferTest() throws IOException {
+		OffHeapSpace space = new OffHeapSpace(12);
+		space.putLong(8, 1);
+		space.shift(8).transferTo(0, 8, space.shift(16), 0);
+		assertEquals(1, space.getLong(16));
+		try {
+			space.shift(8).transferTo(0, 16, space.shift(16), 0);
+		} finally {
+			space.close();
+		}
+	}
+	
+	@Test
+	public void channelTransferTest() throws IOException {
+		Path sourcePath = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "transfersource.map");
+		Path targetPath = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "transfertarget.map");
+		Files.deleteIfExists(sourcePath);
+		Files.deleteIfExists(targetPath);
+		FileChannelSpace source = FileChannelSpace.of(sourcePath);
+		for (long i = 0 ; i < 1024 ; i++) {
+			source.putLong(i * 4096, i);
+		}
+		MappedFileSpace target = MappedFileSpace.of(targetPath);
+		target.putLong((1L << 20) + 16, -1);
+		source.transferTo(0, 1L << 30, target, 8);
+		for (long i = 0 ; i < 1024 ; i++) {
+			assertEquals(i, target.getLong(i * 4096 + 8));
+		}
+		assertEquals(0, target.getLong((1L << 20) + 16));
+		source.close();
+		target.close();
+	}
+	
+	@Test
+	public void channelTransferForceTest() throws IOException {
+		Path sourcePath = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "transfersource.map");
+		Path targetPath = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "transfertarget.map");
+		Files.deleteIfExists(sourcePath);
+		Files.deleteIfExists(targetPath);
+		FileChannelSpace source = FileChannelSpace.of(sourcePath);
+		source.putLong(4096, 1);
+		AtomicInteger forces = new AtomicInteger();
+		FileChannel channel = new ForwardingChannel(FileChannel.open(targetPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+			@Override
+			public void force(boolean metaData) throws IOException {
+				forces.incrementAndGet();
+				super.force(metaData);
+			}
+		};
+		MappedFileSpace target = new MappedFileSpace(channel, MapMode.READ_WRITE, 16);
+		source.transferTo(0, 8192, target, 0);
+		target.force();
+		assertEquals(1, forces.get());
+		assertEquals(1, target.getLong(4096));
+		source.close();
+		target.close();
+	}
+	
+	private static class ForwardingChannel extends FileChannel {
+		
+		private final FileChannel channel;
+		
+		ForwardingChannel(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			return channel.read(dst);
+		}
+		
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			return channel.read(dsts, offset, length);
+		}
+		
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			return channel.write(src);
+		}
+		
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			return channel.write(srcs, offset, length);
+		}
+		
+		@Override
+		public long position() throws IOException {
+			return channel.position();
+		}
+		
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			channel.position(newPosition);
+			return this;
+		}
+		
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+		
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			channel.truncate(size);
+			return this;
+		}
+		
+		@Override
+		public void force(boolean metaData) throws IOException {
+			channel.force(metaData);
+		}
+		
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			return channel.transferTo(position, count, target);
+		}
+		
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			return channel.transferFrom(src, position, count);
+		}
+		
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return channel.read(dst, position);
+		}
+		
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			return channel.write(src, position);
+		}
+		
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			return channel.map(mode, position, size);
+		}
+		
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			return channel.lock(position, size, shared);
+		}
+		
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			return channel.tryLock(position, size, shared);
+		}
+		
+		@Override
+		protected void implCloseChannel() throws IOException {
+			channel.close();
+		}
+	}
+	
+	@Test
+	public void forceTest() throws IOException {
+		AtomicInteger pageForces = new AtomicInteger();
+		AtomicInteger syncs = new AtomicInteger();
+		PagedSpace space = new PagedSpace(12) {
+			@Override
+			protected ByteSpace map(long page, long capacity) {
+				return new SpaceView(ByteBufferSpace.of(ByteBuffer.allocate((int) capacity)), 0, SpaceView.UNLIMITED) {
+					@Override
+					public ByteSpace force() {
+						pageForces.incrementAndGet();
+						return this;
+					}
+				};
+			}
+			
+			@Override
+			protected void sync() {
+				syncs.incrementAndGet();
+			}
+			
+			@Override
+			public long capacity() {
+				return -1;
+			}
+		};
+		for (long i = 0 ; i < 100 ; i++) {
+			space.putLong(i << 12, i);
+			space.getLong((i + 100) << 12);
+		}
+		space.force();
+		assertEquals(100, pageForces.get());
+		assertEquals(1, syncs.get());
+		space.force();
+		assertEquals(100, pageForces.get());
+		assertEquals(1, syncs.get());
+		space.putInt(5 << 12, 5);
+		space.force();
+		assertEquals(101, pageForces.get());
+		assertEquals(2, syncs.get());
+		LongStream.range(0, 1000)
+			.parallel()
+			.forEach(i -> {
+				space.putLong(i << 12, i);
+				try {
+					space.force();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		assertTrue(space.counts().get(SpaceCounters.FLUSHES) <= 1003);
+		space.force();
+		assertEquals(1101, pageForces.get());
+	}
+	
+	@Test
+	public void flusherTest() throws IOException, InterruptedException {
+		AtomicInteger pageForces = new AtomicInteger();
+		AtomicInteger syncs = new AtomicInteger();
+		PagedSpace space = new PagedSpace(12) {
+			@Override
+			protected ByteSpace map(long page, long capacity) {
+				return new SpaceView(ByteBufferSpace.of(ByteBuffer.allocate((int) capacity)), 0, SpaceView.UNLIMITED) {
+					@Override
+					public ByteSpace force() {
+						pageForces.incrementAndGet();
+						return this;
+					}
+				};
+			}
+			
+			@Override
+			protected void sync() {
+				syncs.incrementAndGet();
+			}
+			
+			@Override
+			public long capacity() {
+				return -1;
+			}
+		};
+		// the period is too long to matter, flushes are triggered by the budget
+		space.startFlusher(1, TimeUnit.HOURS, 1024);
+		for (long i = 0 ; i < 100 ; i++) {
+			space.putLong(i << 12, i);
+		}
+		assertTrue(space.unflushedBytes() <= 100 * Long.BYTES);
+		space.put(100 << 12, new byte[2048]);
+		for (int i = 0 ; i < 100 && space.unflushedBytes() > 0 ; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, space.unflushedBytes());
+		assertEquals(101, pageForces.get());
+		assertEquals(0, syncs.get());
+		assertTrue(space.counts().get(SpaceCounters.BACKGROUNDFLUSHES) > 0);
+		// pages forced by the flusher still require a sync
+		space.force();
+		assertEquals(101, pageForces.get());
+		assertEquals(1, syncs.get());
+		space.stopFlusher();
+		space.putLong(0, 0);
+		assertEquals(0, space.unflushedBytes());
+		space.close();
+	}
+	
+	@Test
+	public void flusherForceTest() throws Exception {
+		CountDownLatch flushing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger syncs = new AtomicInteger();
+		PagedSpace space = new PagedSpace(12) {
+			@Override
+			protected ByteSpace map(long page, long capacity) {
+				return new SpaceView(ByteBufferSpace.of(ByteBuffer.allocate((int) capacity)), 0, SpaceView.UNLIMITED) {
+					@Override
+					public ByteSpace force() {
+						if (Thread.currentThread().getName().equals("obelix-flusher")) {
+							flushing.countDown();
+							try {
+								release.await();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+						return this;
+					}
+				};
+			}
+			
+			@Override
+			protected void sync() {
+				syncs.incrementAndGet();
+			}
+			
+			@Override
+			public long capacity() {
+				return -1;
+			}
+		};
+		space.startFlusher(1, TimeUnit.HOURS, 1024);
+		space.put(0, new byte[2048]);
+		assertTrue(flushing.await(10, TimeUnit.SECONDS));
+		CompletableFuture<Void> force = CompletableFuture.runAsync(() -> {
+			try {
+				space.force();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		// the page is already clean, but not yet written
+		Thread.sleep(50);
+		assertFalse(force.isDone());
+		release.countDown();
+		force.get(10, TimeUnit.SECONDS);
+		assertEquals(1, syncs.get());
+		space.stopFlusher();
+		space.close();
+	}
+	
+	@Test
+	public void snapshotTest() throws IOException {
+		PagedSpace space = new HeapSpace();
+		LongStream.range(0, 100_000).forEach(i -> space.putLong(i * Long.BYTES, i));
+		ByteSpace snapshot = space.snapshot();
+		LongStream.range(0, 100_000).parallel().forEach(i -> space.putLong(i * Long.BYTES, -i));
+		space.putLong((1 << 16) - 4, 1);
+		space.putInt(5L << 40, 5);
+		assertEquals(-10, space.getLong(10 * Long.BYTES));
+		LongStream.range(0, 100_000).parallel().forEach(i -> assertEquals(i, snapshot.getLong(i * Long.BYTES)));
+		assertEquals(space.getLong(0) , snapshot.getLong(0));
+		assertEquals(0, snapshot.getInt(5L << 40));
+		ByteSpace second = space.snapshot();
+		assertEquals(2, space.snapshotCount());
+		space.putLong(8, 8);
+		assertEquals(1, snapshot.getLong(8));
+		assertEquals(-1, second.getLong(8));
+		assertEquals(5, second.getInt(5L << 40));
+		snapshot.close();
+		second.close();
+		assertEquals(0, space.snapshotCount());
+		space.close();
+	}
+	
+	@Test
+	public void snapshotSliceTest() throws IOException {
+		PagedSpace space = new HeapSpace(20);
+		space.putLong((3 << 16) + 16, 3);
+		ByteSpace slice = space.slice(3 << 16, 1 << 10);
+		SnapshotSpace snapshot = (SnapshotSpace) space.snapshot();
+		// nothing is copied until written
+		assertEquals(0, snapshot.preservedBlocks());
+		slice.putLong(16, 4);
+		slice.slice(512, 8).putLong(0, 5);
+		assertEquals(4, space.getLong((3 << 16) + 16));
+		assertEquals(5, space.getLong((3 << 16) + 512));
+		assertEquals(3, snapshot.getLong((3 << 16) + 16));
+		assertEquals(0, snapshot.getLong((3 << 16) + 512));
+		assertEquals(1, snapshot.preservedBlocks());
+		snapshot.close();
+		assertEquals(0, snapshot.preservedBlocks());
+		space.close();
+	}
+	
+	@Test
+	public void bulkTest() throws IOException {
+		PagedSpace space = new HeapSpace(12);
+		long[] longs = LongStream.range(0, 10_000).map(i -> i * i).toArray();
+		// odd position, so some values cross a page boundary
+		space.putLongs(3, longs, 0, longs.length);
+		LongStream.range(0, longs.length).forEach(i -> assertEquals(i * i, space.getLong(3 + i * Long.BYTES)));
+		long[] result = new long[longs.length + 2];
+		space.getLongs(3, result, 1, longs.length);
+		assertEquals(0, result[0]);
+		assertEquals(0, result[result.length - 1]);
+		assertTrue(Arrays.equals(longs, Arrays.copyOfRange(result, 1, longs.length + 1)));
+		int[] ints = IntStream.range(0, 10_000).map(i -> -i).toArray();
+		space.putInts(1 << 20, ints, 0, ints.length);
+		int[] intResult = new int[ints.length];
+		space.shift(1 << 20).getInts(0, intResult, 0, ints.length);
+		assertTrue(Arrays.equals(ints, intResult));
+		double[] doubles = IntStream.range(0, 10_000).mapToDouble(i -> i / 3.0).toArray();
+		ByteSpace bufferSpace = ByteBufferSpace.of(ByteBuffer.allocate(1 << 20));
+		bufferSpace.putDoubles(5, doubles, 0, doubles.length);
+		assertEquals(doubles[7], bufferSpace.getDouble(5 + 7 * Double.BYTES), 0);
+		double[] doubleResult = new double[doubles.length];
+		bufferSpace.getDoubles(5, doubleResult, 0, doubles.length);
+		assertTrue(Arrays.equals(doubles, doubleResult));
+		space.close();
+	}
+	
+	@Test
+	public void byteOrderTest() throws IOException {
+		byteOrderTest(new HeapSpace(12).order(ByteOrder.LITTLE_ENDIAN));
+		byteOrderTest(new OffHeapSpace(12).order(ByteOrder.LITTLE_ENDIAN));
+		byteOrderTest(ByteBufferSpace.of(ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN)));
+	}
+	
+	private void byteOrderTest(ByteSpace space) throws IOException {
+		assertEquals(ByteOrder.LITTLE_ENDIAN, space.order());
+		space.putLong(8, 0x0102030405060708L);
+		assertEquals(8, space.get(8));
+		assertEquals(1, space.get(15));
+		// crossing a page boundary
+		space.putLong(4092, 0x0102030405060708L);
+		assertEquals(8, space.get(4092));
+		assertEquals(0x0102030405060708L, space.getLong(4092));
+		assertEquals(0x05060708, space.get(4092, Integer.BYTES).getInt());
+		assertTrue(space.compareAndSwapLong(16, 0, 0x0102L));
+		assertEquals(2, space.get(16));
+		assertEquals(0x0102L, space.getAndAddLong(16, 1));
+		assertEquals(3, space.get(16));
+		long[] longs = { 1, 2, 3 };
+		space.putLongs(4080, longs, 0, longs.length);
+		assertEquals(2, space.get(4088));
+		assertEquals(3L, space.getLong(4096));
+		space.close();
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void byteOrderChangeTest() throws IOException {
+		PagedSpace space = new HeapSpace(12);
+		space.putLong(0, 1);
+		space.order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	@Test
+	public void fillTest() throws IOException {
+		PagedSpace space = new HeapSpace(12);
+		space.fill(4000, 3 * 4096, (byte) 7);
+		assertEquals(0, space.get(3999));
+		assertEquals(0x0707070707070707L, space.getLong(4090));
+		assertEquals(7, space.get(4000 + 3 * 4096 - 1));
+		assertEquals(0, space.get(4000 + 3 * 4096));
+		assertEquals(4, space.pageCount());
+		// releases two whole pages and two partial pages
+		space.release(4000, 3 * 4096);
+		assertEquals(2, space.pageCount());
+		assertEquals(0, space.get(4000));
+		assertEquals(0, space.getLong(8192));
+		assertEquals(3, space.pageCount());
+		ByteSpace buffer = ByteBufferSpace.of(ByteBuffer.allocateDirect(100));
+		buffer.fill(3, 90, (byte) -1);
+		assertEquals(-1L, buffer.getLong(50));
+		assertEquals(0, buffer.get(93));
+		buffer.release(3, 90);
+		assertEquals(0L, buffer.getLong(50));
+		space.close();
+	}
+	
+	@Test
+	public void compareTest() throws IOException {
+		byte[] key = new byte[100];
+		new Random(1).nextBytes(key);
+		ByteSpace paged = new HeapSpace(12);
+		ByteSpace little = new OffHeapSpace(12).order(ByteOrder.LITTLE_ENDIAN);
+		ByteSpace buffer = ByteBufferSpace.of(ByteBuffer.allocate(1 << 12));
+		// the range crosses a page boundary
+		paged.put(4050, key);
+		little.put(4001, key);
+		buffer.put(13, key);
+		assertEquals(0, paged.compare(4050, key, 0, key.length));
+		assertEquals(0, paged.shift(4000).compare(60, key, 10, key.length - 10));
+		assertEquals(-1, paged.mismatch(4050, little, 4001, key.length));
+		assertEquals(-1, buffer.mismatch(13, paged, 4050, key.length));
+		assertEquals(paged.hash64(4050, key.length), little.hash64(4001, key.length));
+		assertEquals(paged.hash64(4050, key.length), buffer.hash64(13, key.length));
+		assertEquals(paged.hash64(4050, 13), buffer.shift(13).hash64(0, 13));
+		assertTrue(paged.hash64(4050, key.length) != paged.hash64(4051, key.length));
+		little.put(4001 + 57, (byte) (key[57] + 1));
+		assertEquals(57, paged.mismatch(4050, little, 4001, key.length));
+		assertEquals(57, little.mismatch(4001, buffer, 13, key.length));
+		assertTrue(little.compare(4001, key, 0, key.length) > 0);
+		assertTrue(paged.hash64(4050, key.length) != little.hash64(4001, key.length));
+		key[99]--;
+		assertTrue(buffer.compare(13, key, 0, key.length) > 0);
+		assertEquals(99, buffer.mismatch(13, ByteBufferSpace.of(ByteBuffer.wrap(key)), 0, key.length));
+		paged.close();
+		little.close();
+	}
+	
+	@Test
+	public void viewTest() throws IOException {
+		PagedSpace space = new HeapSpace(12);
+		space.putLong(4096 + 24, 42L);
+		ByteSpace view = space.shift(8).capacity(1 << 20).shift(8).capacity(1 << 16).shift(8);
+		assertTrue(view instanceof SpaceView);
+		assertTrue(((SpaceView) view).space() == space);
+		assertEquals((1 << 16) - 8, view.capacity());
+		assertEquals(42L, view.getLong(4096));
+		try {
+			view.getLong((1 << 16) - 12);
+			assertTrue(false);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		// a slice within a page resolves to the page buffer, only tracking writes
+		ByteSpace slice = view.slice(4080, 100);
+		assertTrue(((WrappedSpace) slice).space() instanceof ByteBufferSpace);
+		assertEquals(42L, slice.getLong(16));
+		assertEquals(100, slice.capacity());
+		assertEquals(42L, slice.shift(8).getLong(8));
+		assertTrue(view.slice(4000, 104) instanceof SpaceView);
+		assertEquals(42L, view.slice(4000, 104).getLong(96));
+		space.close();
+	}
+	
+	@Test
+	@Ignore
+	public void viewBenchmark() throws IOException {
+		PagedSpace space = new OffHeapSpace().statistics(false);
+		ByteSpace nested = space;
+		for (int i = 0 ; i < 4 ; i++) {
+			nested = nested.capacity(1L << 40).shift(8);
+		}
+		ByteSpace slice = space.slice(32, 1 << 12);
+		for (ByteSpace view : new ByteSpace[] { space, nested, space.slice(32, 1L << 20), slice }) {
+			long best = Long.MAX_VALUE;
+			long sum = 0;
+			for (int run = 0 ; run < 10 ; run++) {
+				long start = System.nanoTime();
+				for (int i = 0 ; i < 1 << 20 ; i++) {
+					sum += view.getLong((i & 511) << 3);
+				}
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.println(view.getClass().getSimpleName() + ": " + (best >> 20) + " ns per getLong (" + sum + ")");
+		}
+		space.close();
+	}
+	
+	@Test
+	@Ignore
+	public void byteOrderBenchmark() throws IOException {
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.nativeOrder() }) {
+			PagedSpace space = new OffHeapSpace().order(order).statistics(false);
+			long[] values = LongStream.range(0, 1 << 20).toArray();
+			long best = Long.MAX_VALUE;
+			long sum = 0;
+			for (int run = 0 ; run < 10 ; run++) {
+				long start = System.nanoTime();
+				for (int i = 0 ; i < values.length ; i++) {
+					space.putLong(i * 8L, values[i]);
+				}
+				for (int i = 0 ; i < values.length ; i++) {
+					sum += space.getLong(i * 8L);
+				}
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.println(order + ": " + (best / values.length) + " ns per putLong and getLong (" + sum + ")");
+			space.close();
+		}
+	}
+	
+	@Test
+	@Ignore
+	public void benchmark() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "benchmark.map");
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.SPARSE);
+		benchmark(new HeapSpace());
+		benchmark(new OffHeapSpace());
+		benchmark(new MappedFileSpace(channel, MapMode.READ_WRITE, 16));
+	}
+	
+	private void benchmark(PagedSpace space) throws IOException {
+		Random random = new Random(1);
+		long[] positions = new long[1 << 20];
+		for (int i = 0 ; i < positions.length ; i++) {
+			positions[i] = random.nextInt(1 << 18) & ~7L;
+			space.putLong(positions[i], i);
+		}
+		for (boolean statistics : new boolean[] { true, false }) {
+			space.statistics(statistics);
+			long best = Long.MAX_VALUE;
+			long sum = 0;
+			for (int run = 0 ; run < 10 ; run++) {
+				long start = System.nanoTime();
+				for (long position : positions) {
+					sum += space.getLong(position);
+				}
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.println(space.getClass().getSimpleName() + " statistics " + statistics + ": " + (best / positions.length) + " ns per getLong (" + sum + ")");
+		}
+		space.close();
+	}
+}
@@ -0,0 +1,54 @@
+package com.amplifino.obelix.space;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+
+public class StripedSpaceTest {
+	
+	@Test
+	public void test() throws IOException {
+		List<Path> directories = Arrays.asList(emptyDirectory("stripe0"), emptyDirectory("stripe1"), emptyDirectory("stripe2"));
+		StripedSpace space = StripedSpace.on(directories, 16);
+		assertEquals(3, space.getWidth());
+		LongStream.range(0, 1 << 16).parallel().forEach(i -> space.putLong(i * Long.BYTES, i));
+		// crosses a stripe boundary
+		space.putLong((1 << 16) - 4, Long.MIN_VALUE);
+		space.close();
+		// stripes 0, 3, 6 in the first directory, 1, 4, 7 in the second
+		DirectorySpace first = DirectorySpace.on(directories.get(0));
+		assertEquals((3L << 16) / Long.BYTES, first.getLong(1 << 16));
+		first.close();
+		StripedSpace reopened = StripedSpace.on(directories, 16);
+		LongStream.range(0, (1 << 16) / Long.BYTES - 1).forEach(i -> assertEquals(i, reopened.getLong(i * Long.BYTES)));
+		assertEquals(Long.MIN_VALUE, reopened.getLong((1 << 16) - 4));
+		LongStream.range((1 << 16) / Long.BYTES + 1, 1 << 16).forEach(i -> assertEquals(i, reopened.getLong(i * Long.BYTES)));
+		assertTrue(reopened.isHole(1L << 40, 1L << 20));
+		assertFalse(reopened.isHole(0, 1L << 20));
+		reopened.close();
+	}
+	
+	private Path emptyDirectory(String name) throws IOException {
+		Path directory = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix", name);
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		}
+		return directory;
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.amplifino.obelix.space;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+public class TieredSpaceTest {
+	
+	@Test
+	public void promotionTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "tiered.map");
+		Files.deleteIfExists(path);
+		int pageSize = 1 << 12;
+		TieredSpace space = TieredSpace.on(FileChannelSpace.of(path), 12, 4, 3);
+		// a single pass stays in the cold tier
+		LongStream.range(0, 64).forEach(i -> space.putLong(i * pageSize, i));
+		assertEquals(0, space.counts().get(SpaceCounters.PAGEFAULTS));
+		assertEquals(64, space.counts().get(SpaceCounters.BYPASSES));
+		for (int i = 0 ; i < 10 ; i++) {
+			assertEquals(5L, space.getLong(5 * pageSize));
+		}
+		space.putLong(5 * pageSize + 8, -5);
+		assertEquals(1, space.counts().get(SpaceCounters.PAGEFAULTS));
+		assertTrue(space.counts().get(SpaceCounters.POOLHITS) >= 8);
+		space.close();
+		ByteSpace cold = FileChannelSpace.of(path);
+		LongStream.range(0, 64).forEach(i -> assertEquals(i, cold.getLong(i * pageSize)));
+		assertEquals(-5L, cold.getLong(5 * pageSize + 8));
+		cold.close();
+	}
+	
+	@Test
+	public void concurrencyTest() throws IOException {
+		Path path = FileSystems.getDefault().getPath(System.getProperty("user.home"), ".obelix" , "tieredconcurrency.map");
+		Files.deleteIfExists(path);
+		TieredSpace space = TieredSpace.on(FileChannelSpace.of(path), 12, 4, 2);
+		long count = 100_000;
+		// pages are promoted, demoted and bypassed concurrently
+		LongStream.range(0, count).parallel().forEach(i -> space.putLong((i * 7919 % count) * Long.BYTES, i));
+		LongStream.range(0, count).parallel().forEach(i -> assertEquals(i, space.getLong((i * 7919 % count) * Long.BYTES)));
+		assertTrue(space.counts().get(SpaceCounters.EVICTIONS) > 0);
+		assertTrue(space.counts().get(SpaceCounters.BYPASSES) > 0);
+		space.close();
+	}
+}
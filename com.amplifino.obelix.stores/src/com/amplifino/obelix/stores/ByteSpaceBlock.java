@@ -122,8 +122,8 @@ public final class ByteSpaceBlock implements Block<byte[]>  {
 			final int rowDirectoryLength = (size() + 1) * Integer.BYTES; 
 			final long position = space.capacity() - rowDirectoryLength;
 			final int modifiedRowDirectoryLength = rowDirectoryLength - index * Integer.BYTES;
-			ByteBuffer from =  space.get(position + Integer.BYTES, index == 0 ? modifiedRowDirectoryLength - Integer.BYTES : modifiedRowDirectoryLength);
-			ByteBuffer to = ByteBuffer.allocate(rowDirectoryLength);
+			ByteBuffer from =  space.get(position + Integer.BYTES, index == 0 ? modifiedRowDirectoryLength - Integer.BYTES : modifiedRowDirectoryLength).order(space.order());
+			ByteBuffer to = ByteBuffer.allocate(rowDirectoryLength).order(space.order());
 			for (int i = size() ; i >= index; i--) {
 				to.putInt(((i == 0) ? Integer.BYTES : from.getInt()) + element.length); 			
 			}